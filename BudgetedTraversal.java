@@ -0,0 +1,398 @@
+package utility;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 可以限额, 取消和续跑的遍历<br/><br/>
+ *
+ * <code>BreadthFirstPaths</code>, <code>DepthFirstPaths</code>, <code>Accessibility</code>, <code>CycleDetecting</code>
+ * 在构造器里一次做完所有工作. 这里的对应版本在构造时只记下起点, 每次 {@link #run(TraversalBudget)} 在预算内推进,
+ * 用完预算就停下, 返回停下的原因; 队列/栈和弧的迭代器都保存在对象里, 再次 <code>run</code> 从停下的那条弧继续, 不会重复扫描.
+ * 停下时已有的结果 (已访问的顶点, 已知的路径, 已找到的环) 都是有效的, 只是不完整, 由 {@link #isTruncated()} 标明.<br/>
+ * 预算检查在每扫描一条弧之前: 顶点数和弧数每次都比较, 截止时间和取消标志每 64 次检查一次.
+ * 遍历期间图不能修改, 续跑时发现 {@link Graph#version()} 变了会抛出 <code>ConcurrentModificationException</code>; 已经完成的遍历不再检查.
+ * 不是线程安全的, 取消标志除外.
+ */
+public abstract class BudgetedTraversal {
+
+	/**
+	 * 遍历的状态, 也是 <code>run</code> 停下的原因
+	 */
+	public enum Status {
+		NOT_STARTED,
+		COMPLETED,
+		VERTEX_LIMIT,
+		ARC_LIMIT,
+		DEADLINE,
+		CANCELLED
+	}
+
+	private static final int CLOCK_MASK = 63;
+
+	final Map<Integer, ? extends Set<? extends Graph.Arc<?>>> adjacency;
+	final Set<Integer> marked = new HashSet<Integer>();
+	/* key=当前的目的地节点, value=目的地节点的前一个节点 */
+	final Map<Integer, Integer> from = new HashMap<Integer, Integer>();
+	TraversalListener listener = TraversalListener.NOOP;
+	private final Graph<?, ?> graph;
+	private final long version;
+	private final String algorithm;
+	private Status status = Status.NOT_STARTED;
+	private long scannedArcs;
+	/* 本次 run 的预算和计数 */
+	private TraversalBudget budget;
+	private long runVertices;
+	private long runArcs;
+	private int checks;
+	private Status stop;
+
+	BudgetedTraversal(Graph<?, ?> graph, String algorithm) {
+		this.graph = graph;
+		this.adjacency = graph.unmodifiableAdjacency();
+		this.version = graph.version();
+		this.algorithm = algorithm;
+	}
+
+	/**
+	 * 在预算内推进遍历, 返回之后的状态; 已经完成时直接返回 {@link Status#COMPLETED}
+	 */
+	public final Status run(TraversalBudget budget) {
+		if(status == Status.COMPLETED)
+			return status;
+		if(graph.version() != version)
+			throw new ConcurrentModificationException("graph modified since the traversal was created");
+		this.budget = budget;
+		this.runVertices = 0;
+		this.runArcs = 0;
+		this.checks = 0;
+		this.stop = null;
+		if(budget.cancelled())
+			return status = Status.CANCELLED;
+		if(budget.pastDeadline())
+			return status = Status.DEADLINE;
+		listener = Graph.traversalListener();
+		listener.started(algorithm);
+		try {
+			status = advance() ? Status.COMPLETED : stop;
+		} finally {
+			listener.finished(algorithm);
+			listener = TraversalListener.NOOP;
+			this.budget = null;
+		}
+		return status;
+	}
+
+	/** 不限预算地跑完 */
+	public final Status runToCompletion() {
+		return run(TraversalBudget.UNLIMITED);
+	}
+
+	public Status status() {
+		return status;
+	}
+
+	/** 上一次 <code>run</code> 因为预算停下, 结果不完整 */
+	public boolean isTruncated() {
+		return status != Status.COMPLETED && status != Status.NOT_STARTED;
+	}
+
+	public boolean isCompleted() {
+		return status == Status.COMPLETED;
+	}
+
+	/** 到目前为止访问的顶点数, 含起点 */
+	public long visitedVertices() {
+		return marked.size();
+	}
+
+	/** 到目前为止扫描的弧数 */
+	public long scannedArcs() {
+		return scannedArcs;
+	}
+
+	/* 推进到结束返回 true, 预算用完返回 false */
+	abstract boolean advance();
+
+	/* 扫描下一条弧之前调用, 返回 false 时 stop 已记下原因 */
+	final boolean mayScan() {
+		if(runVertices >= budget.maxVertices()) {
+			stop = Status.VERTEX_LIMIT;
+			return false;
+		}
+		if(runArcs >= budget.maxArcs()) {
+			stop = Status.ARC_LIMIT;
+			return false;
+		}
+		if((++checks & CLOCK_MASK) == 0) {
+			if(budget.cancelled()) {
+				stop = Status.CANCELLED;
+				return false;
+			}
+			if(budget.pastDeadline()) {
+				stop = Status.DEADLINE;
+				return false;
+			}
+		}
+		return true;
+	}
+
+	final void scanned(int fromId, int toId) {
+		runArcs++;
+		scannedArcs++;
+		listener.scanned(fromId, toId);
+	}
+
+	/* 标记一个新顶点, 已标记过时返回 false */
+	final boolean visit(int vertexId) {
+		if(!marked.add(vertexId))
+			return false;
+		runVertices++;
+		listener.visited(vertexId);
+		return true;
+	}
+
+	final Iterator<? extends Graph.Arc<?>> arcsOf(int vertexId) {
+		Set<? extends Graph.Arc<?>> arcs = adjacency.get(vertexId);
+		return arcs == null ? Collections.<Graph.Arc<?>>emptyIterator() : arcs.iterator();
+	}
+
+	public boolean hasPathTo(int destination) {
+		return marked.contains(destination);
+	}
+
+	/**
+	 * 到目前为止找到的从某个起点到 <code>destination</code> 的路径, 还没访问到时为空表
+	 */
+	public List<Integer> pathTo(int destination) {
+		List<Integer> path = new LinkedList<Integer>();
+		if(!hasPathTo(destination))
+			return path;
+		int currentId = destination;
+		while(from.containsKey(currentId)) {
+			path.add(0, currentId);
+			currentId = from.get(currentId);
+		}
+		path.add(0, currentId);
+		return path;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("{algorithm=%s, status=%s, visitedVertices=%d, scannedArcs=%d}", algorithm, status, visitedVertices(), scannedArcs);
+	}
+
+	/**
+	 * 广度优先搜索, 访问到的顶点的路径都是边数最少的
+	 */
+	public static class BreadthFirst extends BudgetedTraversal {
+		private final Iterator<Integer> sources;
+		private final Deque<Integer> queue = new ArrayDeque<Integer>();
+		private int current;
+		private Iterator<? extends Graph.Arc<?>> arcs = Collections.<Graph.Arc<?>>emptyIterator();
+
+		public <T1 extends Comparable<T1>, T2 extends Number> BreadthFirst(Graph<T1, T2> graph, int source) {
+			this(graph, Collections.singletonList(source));
+		}
+
+		public <T1 extends Comparable<T1>, T2 extends Number> BreadthFirst(Graph<T1, T2> graph, Iterable<Integer> sources) {
+			super(graph, "BudgetedBreadthFirst");
+			this.sources = sources.iterator();
+		}
+
+		@Override
+		boolean advance() {
+			/* 所有起点先入队, 再开始扩展, 每个顶点的路径才从离它最近的起点出发 */
+			while(sources.hasNext()) {
+				if(!mayScan())
+					return false;
+				int source = sources.next();
+				if(visit(source))
+					queue.add(source);
+			}
+			while(true) {
+				if(!arcs.hasNext()) {
+					Integer next = queue.poll();
+					if(next == null)
+						return true;
+					current = next;
+					arcs = arcsOf(current);
+					continue;
+				}
+				if(!mayScan())
+					return false;
+				int neighbour = arcs.next().getId();
+				scanned(current, neighbour);
+				if(visit(neighbour)) {
+					from.put(neighbour, current);
+					queue.add(neighbour);
+				}
+				if(!arcs.hasNext())
+					listener.frontier(queue.size());
+			}
+		}
+
+		/** 等待扩展的顶点数, 完成时为 0 */
+		public int frontierSize() {
+			return queue.size();
+		}
+	}
+
+	/**
+	 * 深度优先搜索, 用显式栈, 不受线程栈大小限制; 多个起点时依次从未访问的起点出发
+	 */
+	public static class DepthFirst extends BudgetedTraversal {
+		private final Iterator<Integer> sources;
+		private final Deque<Frame> stack = new ArrayDeque<Frame>();
+
+		public <T1 extends Comparable<T1>, T2 extends Number> DepthFirst(Graph<T1, T2> graph, int source) {
+			this(graph, Collections.singletonList(source));
+		}
+
+		public <T1 extends Comparable<T1>, T2 extends Number> DepthFirst(Graph<T1, T2> graph, Iterable<Integer> sources) {
+			this(graph, sources, "BudgetedDepthFirst");
+		}
+
+		<T1 extends Comparable<T1>, T2 extends Number> DepthFirst(Graph<T1, T2> graph, Iterable<Integer> sources, String algorithm) {
+			super(graph, algorithm);
+			this.sources = sources.iterator();
+		}
+
+		@Override
+		final boolean advance() {
+			while(true) {
+				Frame top = stack.peek();
+				if(top == null) {
+					if(!sources.hasNext())
+						return true;
+					if(!mayScan())
+						return false;
+					int source = sources.next();
+					if(visit(source))
+						push(source);
+					continue;
+				}
+				if(!top.arcs.hasNext()) {
+					stack.pop();
+					leave(top.vertex);
+					continue;
+				}
+				if(!mayScan())
+					return false;
+				int neighbour = top.arcs.next().getId();
+				scanned(top.vertex, neighbour);
+				if(visit(neighbour)) {
+					from.put(neighbour, top.vertex);
+					push(neighbour);
+				} else
+					revisit(top.vertex, neighbour);
+			}
+		}
+
+		private void push(int vertexId) {
+			listener.depth(stack.size());
+			stack.push(new Frame(vertexId, arcsOf(vertexId)));
+			enter(vertexId);
+		}
+
+		/* 顶点入栈 */
+		void enter(int vertexId) {
+		}
+
+		/* 顶点的所有出弧都扫描完, 出栈 */
+		void leave(int vertexId) {
+		}
+
+		/* 扫描到一条指向已访问顶点的弧 */
+		void revisit(int fromId, int toId) {
+		}
+
+		/** 当前的递归深度, 即栈上的顶点数 */
+		public int depth() {
+			return stack.size();
+		}
+
+		private static class Frame {
+			private final int vertex;
+			private final Iterator<? extends Graph.Arc<?>> arcs;
+
+			private Frame(int vertex, Iterator<? extends Graph.Arc<?>> arcs) {
+				this.vertex = vertex;
+				this.arcs = arcs;
+			}
+		}
+	}
+
+	/**
+	 * 有向图中从一组顶点出发的可达性, 对应 <code>DirectedGraph.Accessibility</code>
+	 */
+	public static class Accessibility extends DepthFirst {
+
+		public <T1 extends Comparable<T1>, T2 extends Number> Accessibility(DirectedGraph<T1, T2> graph, Set<Integer> vertexIds) {
+			super(graph, new ArrayList<Integer>(vertexIds), "BudgetedAccessibility");
+		}
+
+		/** 到目前为止确认可达的顶点 */
+		public Set<Integer> reachable() {
+			return Collections.unmodifiableSet(marked);
+		}
+
+		public boolean isReachable(int vertexId) {
+			return marked.contains(vertexId);
+		}
+	}
+
+	/**
+	 * 寻找有向环, 对应 <code>DirectedGraph.CycleDetecting</code>: 每条指向栈上顶点的弧记一个环
+	 */
+	public static class CycleDetecting extends DepthFirst {
+		private final Set<Integer> onStack = new HashSet<Integer>();
+		private final List<List<Integer>> cycles = new ArrayList<List<Integer>>();
+
+		public <T1 extends Comparable<T1>, T2 extends Number> CycleDetecting(DirectedGraph<T1, T2> graph) {
+			super(graph, graph.unmodifiableAdjacency().keySet(), "BudgetedCycleDetecting");
+		}
+
+		@Override
+		void enter(int vertexId) {
+			onStack.add(vertexId);
+		}
+
+		@Override
+		void leave(int vertexId) {
+			onStack.remove(vertexId);
+		}
+
+		@Override
+		void revisit(int fromId, int toId) {
+			if(!onStack.contains(toId))
+				return;
+			List<Integer> cycle = new LinkedList<Integer>();
+			for(int pathFinder = fromId; pathFinder != toId; pathFinder = from.get(pathFinder))
+				cycle.add(0, pathFinder);
+			cycle.add(0, toId);
+			cycle.add(0, fromId);
+			cycles.add(new ArrayList<Integer>(cycle));
+		}
+
+		/** 到目前为止找到的环, 格式和 <code>DirectedGraph.CycleDetecting.cycles()</code> 相同 */
+		public List<List<Integer>> cycles() {
+			return Collections.unmodifiableList(cycles);
+		}
+
+		/** 已经找到环; 截断时为 false 不代表无环 */
+		public boolean hasCycle() {
+			return !cycles.isEmpty();
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package utility;
+
+/**
+ * 取消标志, 由发起方在任意线程上 {@link #cancel()}, 遍历在执行线程上定期检查<br/><br/>
+ *
+ * 一旦取消不能恢复, 要继续遍历时换一个新的 token.
+ */
+public final class CancellationToken {
+
+	private volatile boolean cancelled;
+
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("{cancelled=%s}", cancelled);
+	}
+}
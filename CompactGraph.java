@@ -0,0 +1,550 @@
+package utility;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 冻结成压缩行存储 (CSR) 的只读图, 顶点按局部性重新编号<br/><br/>
+ *
+ * 上游给的顶点 id 没有规律, <code>Graph</code> 的 <code>HashMap</code> 又是按哈希排列的, 相邻的顶点在内存里相距很远.
+ * 这里把顶点按 {@link Ordering} 重新编号为 <code>0 .. n-1</code>, 出弧存成 <code>offsets</code>/<code>targets</code> 两个 int 数组,
+ * 遍历时相邻的顶点落在相近的缓存行里. 所有公开方法的参数和结果都是原来的顶点 id, 内部编号对调用者不可见.<br/>
+ * 排序只看图的结构 (把弧当作无向的), 不看权重. 这个类本身不存权重, 需要权重时用
+ * {@link IntWeightedGraph}, {@link LongWeightedGraph} 或 {@link DoubleWeightedGraph}, 它们的权重放在和弧对齐的基本类型数组里.
+ */
+public class CompactGraph {
+
+	/**
+	 * 顶点的重新编号方式
+	 */
+	public enum Ordering {
+		/** 按原 id 升序 */
+		IDENTITY,
+		/** 每个连通分量从度数最大的顶点开始广度优先编号 */
+		BFS,
+		/** Reverse Cuthill–McKee: 从度数最小的顶点开始广度优先, 邻居按度数升序, 最后整体反转; 让弧的两端编号尽量接近 */
+		RCM,
+		/** 按度数降序, 高度数的顶点集中在数组开头 */
+		DEGREE
+	}
+
+	private final Ordering ordering;
+	/* 原 id 升序, internalOf[i] 是 sortedIds[i] 的内部编号 */
+	private final int[] sortedIds;
+	private final int[] internalOf;
+	/* 内部编号 -> 原 id */
+	private final int[] externalOf;
+	/* 内部编号 v 的出弧终点是 targets[offsets[v] .. offsets[v + 1]), 按内部编号升序 */
+	private final int[] offsets;
+	private final int[] targets;
+	/* main 里的计时结果写到这里, JIT 就不能把被测的调用当作死代码消掉 */
+	private static volatile int sink;
+
+	public <T1 extends Comparable<T1>, T2 extends Number> CompactGraph(Graph<T1, T2> graph, Ordering ordering) {
+		this.ordering = ordering;
+		Set<Integer> vertexIds = graph.unmodifiableVertexDictionary().keySet();
+		int n = vertexIds.size();
+		this.sortedIds = new int[n];
+		int index = 0;
+		for(int id : vertexIds)
+			sortedIds[index++] = id;
+		Arrays.sort(sortedIds);
+
+		/* 先按原 id 的顺序建一份 CSR */
+		Map<Integer, Set<Graph.Arc<T2>>> adjacency = graph.unmodifiableAdjacency();
+		int[] sortedOffsets = new int[n + 1];
+		for(int i = 0; i < n; i++) {
+			Set<Graph.Arc<T2>> arcs = adjacency.get(sortedIds[i]);
+			sortedOffsets[i + 1] = sortedOffsets[i] + (arcs == null ? 0 : arcs.size());
+		}
+		int[] sortedTargets = new int[sortedOffsets[n]];
+		for(int i = 0; i < n; i++) {
+			Set<Graph.Arc<T2>> arcs = adjacency.get(sortedIds[i]);
+			if(arcs == null)
+				continue;
+			int k = sortedOffsets[i];
+			for(Graph.Arc<T2> arc : arcs)
+				sortedTargets[k++] = Arrays.binarySearch(sortedIds, arc.getId());
+		}
+
+		int[] order = order(ordering, n, sortedOffsets, sortedTargets);
+		this.externalOf = new int[n];
+		this.internalOf = new int[n];
+		for(int v = 0; v < n; v++) {
+			internalOf[order[v]] = v;
+			externalOf[v] = sortedIds[order[v]];
+		}
+		this.offsets = new int[n + 1];
+		this.targets = new int[sortedTargets.length];
+		for(int v = 0; v < n; v++) {
+			int i = order[v];
+			int degree = sortedOffsets[i + 1] - sortedOffsets[i];
+			for(int k = 0; k < degree; k++)
+				targets[offsets[v] + k] = internalOf[sortedTargets[sortedOffsets[i] + k]];
+			Arrays.sort(targets, offsets[v], offsets[v] + degree);
+			offsets[v + 1] = offsets[v] + degree;
+		}
+	}
+
+	/* 返回 order, order[v] 是第 v 个内部编号对应的排序后下标 */
+	private static int[] order(Ordering ordering, int n, int[] offsets, int[] targets) {
+		int[] order = new int[n];
+		for(int i = 0; i < n; i++)
+			order[i] = i;
+		if(ordering == Ordering.IDENTITY)
+			return order;
+		int[][] symmetric = symmetrize(n, offsets, targets);
+		int[] symmetricOffsets = symmetric[0];
+		int[] neighbours = symmetric[1];
+		int[] degree = new int[n];
+		for(int i = 0; i < n; i++)
+			degree[i] = symmetricOffsets[i + 1] - symmetricOffsets[i];
+		Integer[] byDegree = new Integer[n];
+		for(int i = 0; i < n; i++)
+			byDegree[i] = i;
+		switch(ordering) {
+		case DEGREE:
+			Arrays.sort(byDegree, (a, b) -> degree[a] != degree[b] ? Integer.compare(degree[b], degree[a]) : Integer.compare(a, b));
+			for(int i = 0; i < n; i++)
+				order[i] = byDegree[i];
+			return order;
+		case BFS:
+			Arrays.sort(byDegree, (a, b) -> degree[a] != degree[b] ? Integer.compare(degree[b], degree[a]) : Integer.compare(a, b));
+			breadthFirst(byDegree, symmetricOffsets, neighbours, null, order);
+			return order;
+		case RCM:
+			Arrays.sort(byDegree, (a, b) -> degree[a] != degree[b] ? Integer.compare(degree[a], degree[b]) : Integer.compare(a, b));
+			breadthFirst(byDegree, symmetricOffsets, neighbours, degree, order);
+			for(int i = 0, j = n - 1; i < j; i++, j--) {
+				int swap = order[i];
+				order[i] = order[j];
+				order[j] = swap;
+			}
+			return order;
+		default:
+			throw new IllegalArgumentException("unknown ordering " + ordering);
+		}
+	}
+
+	/* 依次以 roots 中未访问的顶点为起点广度优先编号; degree 不为 null 时每个顶点的邻居按度数升序入队 */
+	private static void breadthFirst(Integer[] roots, int[] offsets, int[] neighbours, int[] degree, int[] order) {
+		boolean[] marked = new boolean[order.length];
+		int tail = 0;
+		Integer[] scratch = new Integer[0];
+		for(int root : roots) {
+			if(marked[root])
+				continue;
+			marked[root] = true;
+			int head = tail;
+			order[tail++] = root;
+			while(head < tail) {
+				int v = order[head++];
+				int from = tail;
+				for(int k = offsets[v]; k < offsets[v + 1]; k++) {
+					int w = neighbours[k];
+					if(marked[w])
+						continue;
+					marked[w] = true;
+					order[tail++] = w;
+				}
+				if(degree != null && tail - from > 1) {
+					if(scratch.length < tail - from)
+						scratch = new Integer[tail - from];
+					for(int k = from; k < tail; k++)
+						scratch[k - from] = order[k];
+					Arrays.sort(scratch, 0, tail - from, (a, b) -> degree[a] != degree[b] ? Integer.compare(degree[a], degree[b]) : Integer.compare(a, b));
+					for(int k = from; k < tail; k++)
+						order[k] = scratch[k - from];
+				}
+			}
+		}
+	}
+
+	/* 把有向弧当作无向边, 返回 {offsets, neighbours}, 含重复 */
+	private static int[][] symmetrize(int n, int[] offsets, int[] targets) {
+		int[] counts = new int[n + 1];
+		for(int v = 0; v < n; v++) {
+			for(int k = offsets[v]; k < offsets[v + 1]; k++) {
+				counts[v + 1]++;
+				counts[targets[k] + 1]++;
+			}
+		}
+		for(int v = 0; v < n; v++)
+			counts[v + 1] += counts[v];
+		int[] neighbours = new int[counts[n]];
+		int[] cursor = Arrays.copyOf(counts, n);
+		for(int v = 0; v < n; v++) {
+			for(int k = offsets[v]; k < offsets[v + 1]; k++) {
+				neighbours[cursor[v]++] = targets[k];
+				neighbours[cursor[targets[k]]++] = v;
+			}
+		}
+		return new int[][] {counts, neighbours};
+	}
+
+	public Ordering ordering() {
+		return ordering;
+	}
+
+	public int countOfVertex() {
+		return externalOf.length;
+	}
+
+	public int countOfArc() {
+		return targets.length;
+	}
+
+	public boolean containsVertex(int vertexId) {
+		return Arrays.binarySearch(sortedIds, vertexId) >= 0;
+	}
+
+	/** 原 id 的内部编号, 顶点不存在时为 -1 */
+	public int internalId(int vertexId) {
+		int index = Arrays.binarySearch(sortedIds, vertexId);
+		return index < 0 ? -1 : internalOf[index];
+	}
+
+	/** 内部编号对应的原 id */
+	public int externalId(int internalId) {
+		return externalOf[internalId];
+	}
+
+	public int outDegree(int vertexId) {
+		int v = require(vertexId);
+		return offsets[v + 1] - offsets[v];
+	}
+
+	/** 出弧终点的原 id, 按内部编号的顺序 */
+	public int[] neighbours(int vertexId) {
+		int v = require(vertexId);
+		int[] result = new int[offsets[v + 1] - offsets[v]];
+		for(int k = 0; k < result.length; k++)
+			result[k] = externalOf[targets[offsets[v] + k]];
+		return result;
+	}
+
+	/**
+	 * 从 <code>source</code> 出发广度优先访问到的顶点 (原 id), 按访问顺序; 起点不存在时为空数组
+	 */
+	public int[] breadthFirstOrder(int source) {
+		return breadthFirstOrder(new ArraySuccessors(), externalOf, internalId(source));
+	}
+
+	/**
+	 * 和 <code>BreadthFirstPaths.pathTo</code> 一样是边数最少的一条路径 (原 id, 含两端), 不可达时为空表.
+	 * 边数相同的路径可能选得不同, 因为邻居的扫描顺序跟着内部编号走
+	 */
+	public List<Integer> pathTo(int source, int destination) {
+		return pathTo(new ArraySuccessors(), externalOf, internalId(source), internalId(destination));
+	}
+
+	/* 见 breadthFirst(Successors, int, int[], int[]) */
+	int breadthFirst(int source, int[] queue, int[] parent) {
+		return breadthFirst(new ArraySuccessors(), source, queue, parent);
+	}
+
+	/**
+	 * 把弧当作无向边的连通分量, 返回和 {@link #vertexIds()} 对齐的分量编号, 编号从 0 开始连续.
+	 * 对 <code>UndirectedGraph</code> 和 <code>ConnectedComponent</code> 的分组相同
+	 */
+	public int[] connectedComponents() {
+		int n = externalOf.length;
+		int[] root = unionFind(new ArraySuccessors(), n);
+		int[] group = new int[n];
+		int[] number = new int[n];
+		Arrays.fill(number, -1);
+		int count = 0;
+		for(int i = 0; i < n; i++) {
+			int r = root[internalOf[i]];
+			if(number[r] < 0)
+				number[r] = count++;
+			group[i] = number[r];
+		}
+		return group;
+	}
+
+	/*
+	 * 按内部编号逐个给出顶点的出弧, 下面的遍历由 CompactGraph 和 CompressedGraph 共用:
+	 * 前者直接读 targets, 后者先把出弧表解码到缓冲区
+	 */
+	interface Successors {
+		/* 准备顶点 v 的出弧, 返回出度 */
+		int load(int v);
+
+		/* 最近一次 load 的第 k 条出弧的终点 */
+		int get(int k);
+	}
+
+	private final class ArraySuccessors implements Successors {
+		private int base;
+
+		@Override
+		public int load(int v) {
+			base = offsets[v];
+			return offsets[v + 1] - base;
+		}
+
+		@Override
+		public int get(int k) {
+			return targets[base + k];
+		}
+	}
+
+	/* source 为 -1 (顶点不存在) 时为空数组 */
+	static int[] breadthFirstOrder(Successors successors, int[] externalOf, int source) {
+		if(source < 0)
+			return new int[0];
+		int[] queue = new int[externalOf.length];
+		int tail = breadthFirst(successors, source, queue, null);
+		int[] result = new int[tail];
+		for(int i = 0; i < tail; i++)
+			result[i] = externalOf[queue[i]];
+		return result;
+	}
+
+	/* source, destination 为内部编号, -1 表示顶点不存在 */
+	static List<Integer> pathTo(Successors successors, int[] externalOf, int source, int destination) {
+		List<Integer> path = new ArrayList<Integer>();
+		if(source < 0 || destination < 0)
+			return path;
+		int[] parent = new int[externalOf.length];
+		Arrays.fill(parent, -2);
+		breadthFirst(successors, source, new int[externalOf.length], parent);
+		if(parent[destination] == -2)
+			return path;
+		for(int v = destination; v >= 0; v = parent[v])
+			path.add(externalOf[v]);
+		Collections.reverse(path);
+		return path;
+	}
+
+	/*
+	 * queue 的长度是顶点数. parent 为 null 时只记访问顺序; 否则 parent 须预先填 -2 表示未访问, 起点的前驱为 -1.
+	 * 返回访问到的顶点数
+	 */
+	static int breadthFirst(Successors successors, int source, int[] queue, int[] parent) {
+		boolean[] marked = parent == null ? new boolean[queue.length] : null;
+		if(marked != null)
+			marked[source] = true;
+		else
+			parent[source] = -1;
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = source;
+		while(head < tail) {
+			int v = queue[head++];
+			for(int k = 0, count = successors.load(v); k < count; k++) {
+				int w = successors.get(k);
+				if(marked != null) {
+					if(marked[w])
+						continue;
+					marked[w] = true;
+				} else {
+					if(parent[w] != -2)
+						continue;
+					parent[w] = v;
+				}
+				queue[tail++] = w;
+			}
+		}
+		return tail;
+	}
+
+	/* 把弧当作无向边做并查集, 返回每个内部编号所在集合的根 (集合里最小的编号) */
+	static int[] unionFind(Successors successors, int n) {
+		int[] root = new int[n];
+		for(int v = 0; v < n; v++)
+			root[v] = v;
+		for(int v = 0; v < n; v++) {
+			for(int k = 0, count = successors.load(v); k < count; k++) {
+				int a = find(root, v);
+				int b = find(root, successors.get(k));
+				if(a != b)
+					root[Math.max(a, b)] = Math.min(a, b);
+			}
+		}
+		for(int v = 0; v < n; v++)
+			root[v] = find(root, v);
+		return root;
+	}
+
+	private static int find(int[] root, int v) {
+		while(root[v] != v) {
+			root[v] = root[root[v]];
+			v = root[v];
+		}
+		return v;
+	}
+
+	/** 所有顶点的原 id, 升序 */
+	public int[] vertexIds() {
+		return sortedIds.clone();
+	}
+
+	/**
+	 * 弧两端内部编号之差的绝对值的平均数, 越小说明邻居在数组里离得越近
+	 */
+	public double averageGap() {
+		long total = 0;
+		for(int v = 0; v < externalOf.length; v++)
+			for(int k = offsets[v]; k < offsets[v + 1]; k++)
+				total += Math.abs(targets[k] - v);
+		return targets.length == 0 ? 0 : (double) total / targets.length;
+	}
+
+	/* 包内的其它只读表示 (例如压缩的邻接表) 直接读数组 */
+	int[] offsets() {
+		return offsets;
+	}
+
+	int[] targets() {
+		return targets;
+	}
+
+	int[] externalIds() {
+		return externalOf;
+	}
+
+	int require(int vertexId) {
+		int v = internalId(vertexId);
+		if(v < 0)
+			throw new IllegalArgumentException("no vertex " + vertexId);
+		return v;
+	}
+
+	/* 内部编号 from -> to 的弧在 targets 里的位置, 没有这条弧时为负数 */
+	int arcPosition(int from, int to) {
+		return Arrays.binarySearch(targets, offsets[from], offsets[from + 1], to);
+	}
+
+	/* 原图的每条弧在 targets 里的位置和它的权重, 带权重的子类据此填写和 targets 对齐的权重数组 */
+	<T1 extends Comparable<T1>, T2 extends Number> void forEachArc(Graph<T1, T2> graph, ArcVisitor<T2> visitor) {
+		Map<Integer, Set<Graph.Arc<T2>>> adjacency = graph.unmodifiableAdjacency();
+		for(int v = 0; v < externalOf.length; v++) {
+			Set<Graph.Arc<T2>> arcs = adjacency.get(externalOf[v]);
+			if(arcs == null)
+				continue;
+			for(Graph.Arc<T2> arc : arcs)
+				visitor.visit(arcPosition(v, internalId(arc.getId())), arc.getWeight());
+		}
+	}
+
+	interface ArcVisitor<T2 extends Number> {
+		void visit(int position, T2 weight);
+	}
+
+	/**
+	 * 带权重的子类求出的单源最短路径, 参数和结果都是原来的顶点 id
+	 */
+	public abstract static class ShortestPaths {
+		final CompactGraph graph;
+		final int source;
+		/* 内部编号上的前驱, 起点为 -1, 不可达为 -2 */
+		final int[] parent;
+
+		ShortestPaths(CompactGraph graph, int source, int[] parent) {
+			this.graph = graph;
+			this.source = source;
+			this.parent = parent;
+		}
+
+		public int source() {
+			return graph.externalId(source);
+		}
+
+		public boolean hasPathTo(int destination) {
+			int d = graph.internalId(destination);
+			return d >= 0 && parent[d] != -2;
+		}
+
+		/** 权重之和最小的一条路径 (含两端), 不可达时为空表 */
+		public List<Integer> pathTo(int destination) {
+			List<Integer> path = new ArrayList<Integer>();
+			if(!hasPathTo(destination))
+				return path;
+			for(int v = graph.internalId(destination); v >= 0; v = parent[v])
+				path.add(graph.externalId(v));
+			Collections.reverse(path);
+			return path;
+		}
+	}
+
+	/** int 和 long 权重的最短路径, 距离是 long, 不可达为 <code>Long.MAX_VALUE</code> */
+	public static final class LongShortestPaths extends ShortestPaths {
+		private final long[] distance;
+
+		LongShortestPaths(CompactGraph graph, int source, int[] parent, long[] distance) {
+			super(graph, source, parent);
+			this.distance = distance;
+		}
+
+		public long distanceTo(int destination) {
+			return distance[graph.require(destination)];
+		}
+	}
+
+	/** double 权重的最短路径, 不可达为 <code>Double.POSITIVE_INFINITY</code> */
+	public static final class DoubleShortestPaths extends ShortestPaths {
+		private final double[] distance;
+
+		DoubleShortestPaths(CompactGraph graph, int source, int[] parent, double[] distance) {
+			super(graph, source, parent);
+			this.distance = distance;
+		}
+
+		public double distanceTo(int destination) {
+			return distance[graph.require(destination)];
+		}
+	}
+
+	/**
+	 * 在顶点 id 被随机打乱的无向 R-MAT 和网格图上比较各种编号方式的广度优先遍历和连通分量的速度.
+	 * 用法: <code>CompactGraph [规模] [轮数]</code>
+	 */
+	public static void main(String[] args) {
+		int scale = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		int n = 1 << scale;
+		int side = (int) Math.sqrt(n);
+		Map<String, Graph<Integer, Integer>> graphs = new java.util.LinkedHashMap<String, Graph<Integer, Integer>>();
+		graphs.put("rmat-" + scale, GraphGenerator.shuffled(new UndirectedGraph<Integer, Integer>(null, null), n, GraphGenerator.rmat(scale, 8, 20230101L)));
+		graphs.put("grid-" + side + "x" + side, GraphGenerator.shuffled(new UndirectedGraph<Integer, Integer>(null, null), side * side, GraphGenerator.grid(side, side)));
+
+		System.out.println(String.format("%-14s %-10s %10s %12s %12s %12s", "graph", "ordering", "avg gap", "BFS ns/arc", "CC ns/arc", "HashMap BFS"));
+		for(Map.Entry<String, Graph<Integer, Integer>> entry : graphs.entrySet()) {
+			Graph<Integer, Integer> graph = entry.getValue();
+			/* 从度数最大的顶点出发, 保证落在最大的连通分量里 */
+			int source = -1;
+			for(Map.Entry<Integer, Set<Graph.Arc<Integer>>> arcs : graph.unmodifiableAdjacency().entrySet())
+				if(source < 0 || arcs.getValue().size() > graph.unmodifiableAdjacency().get(source).size())
+					source = arcs.getKey();
+			long begin = System.nanoTime();
+			for(int r = 0; r < rounds; r++)
+				new Graph.BreadthFirstPaths(graph, source);
+			double hashMapNanos = (double) (System.nanoTime() - begin) / rounds / graph.countOfArc();
+			for(Ordering ordering : Ordering.values()) {
+				CompactGraph compact = new CompactGraph(graph, ordering);
+				int s = compact.internalId(source);
+				int[] queue = new int[compact.countOfVertex()];
+				int reached = 0;
+				for(int r = 0; r < rounds; r++)
+					reached += compact.breadthFirst(s, queue, null);
+				begin = System.nanoTime();
+				for(int r = 0; r < rounds; r++)
+					reached += compact.breadthFirst(s, queue, null);
+				double bfsNanos = (double) (System.nanoTime() - begin) / rounds / compact.countOfArc();
+				begin = System.nanoTime();
+				for(int r = 0; r < rounds; r++)
+					reached += compact.connectedComponents()[0];
+				double ccNanos = (double) (System.nanoTime() - begin) / rounds / compact.countOfArc();
+				sink += reached;
+				System.out.println(String.format("%-14s %-10s %10.1f %12.2f %12.2f %12.2f", entry.getKey(), ordering,
+						compact.averageGap(), bfsNanos, ccNanos, hashMapNanos));
+			}
+		}
+	}
+}
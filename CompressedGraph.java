@@ -0,0 +1,579 @@
+package utility;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 压缩存储邻接表的只读图 (WebGraph 式)<br/><br/>
+ *
+ * 在 {@link CompactGraph} 的重新编号之上, 每个顶点的出弧表 (按内部编号升序) 编码成字节:
+ * <ul>
+ *  <li>出度 <code>d</code> 和参照距离 <code>r</code> 合成一个变长整数 <code>d * (window + 1) + r</code> (每字节 7 位, 最高位表示后面还有);
+ *      <code>r</code> 为 0 表示不参照, 否则参照前面第 <code>r</code> 个顶点的表</li>
+ *  <li>参照时, 复制块: 块数, 然后交替的 "复制 / 跳过" 长度, 描述参照表里哪些元素也在本表里</li>
+ *  <li>剩下的元素 (残差) 按差值编码: 第一个是和顶点自己编号之差的 zigzag, 之后是相邻两个之差减一</li>
+ * </ul>
+ * 编号的局部性越好, 差值越小, 相似的表也越集中在窗口里, 所以通常配合 BFS 或 RCM 编号使用.
+ * 参照链的长度限制为 {@link #MAX_REFERENCE_CHAIN}, 解码一个表最多递归这么多层.<br/>
+ * 按字节而不是按位编码, 比 WebGraph 的 γ/ζ 码多占一些空间, 换来解码时没有移位和查表.
+ * 所有数据放在一个 <code>byte[]</code> 里, 单张图的压缩数据不能超过 2GB. 公开方法的参数和结果都是原来的顶点 id.
+ */
+public class CompressedGraph {
+
+	public static final int MAX_REFERENCE_CHAIN = 3;
+	public static final int DEFAULT_WINDOW = 7;
+	public static final int MAX_WINDOW = 255;
+
+	private final int window;
+	private final int[] sortedIds;
+	private final int[] internalOf;
+	private final int[] externalOf;
+	private final Encoded forward;
+	/* Kosaraju 需要反向图, 第一次用到时从正向图解码生成 */
+	private Encoded transpose;
+	/* main 里的计时结果写到这里, JIT 就不能把被测的调用当作死代码消掉 */
+	private static volatile int sink;
+
+	public <T1 extends Comparable<T1>, T2 extends Number> CompressedGraph(Graph<T1, T2> graph) {
+		this(new CompactGraph(graph, CompactGraph.Ordering.BFS), DEFAULT_WINDOW);
+	}
+
+	/**
+	 * @param window 参照压缩向前看的顶点数, 0 表示只用差值编码, 最大 {@link #MAX_WINDOW}
+	 */
+	public CompressedGraph(CompactGraph compact, int window) {
+		if(window < 0 || window > MAX_WINDOW)
+			throw new IllegalArgumentException("window must be in [0, " + MAX_WINDOW + "], got " + window);
+		this.window = window;
+		int n = compact.countOfVertex();
+		this.externalOf = compact.externalIds().clone();
+		this.sortedIds = compact.vertexIds();
+		this.internalOf = new int[n];
+		for(int i = 0; i < n; i++)
+			internalOf[i] = compact.internalId(sortedIds[i]);
+		this.forward = encode(n, compact.offsets(), compact.targets(), window);
+	}
+
+	public int countOfVertex() {
+		return externalOf.length;
+	}
+
+	public long countOfArc() {
+		return forward.arcs;
+	}
+
+	/** 压缩数据的字节数, 不含每个顶点 4 字节的起始位置 */
+	public long dataBytes() {
+		return forward.data.length;
+	}
+
+	/** 每条弧平均占用的位数, 只算压缩数据 */
+	public double bitsPerArc() {
+		return forward.arcs == 0 ? 0 : 8.0 * forward.data.length / forward.arcs;
+	}
+
+	/** 每条弧平均占用的位数, 加上每个顶点的起始位置 */
+	public double bitsPerArcWithIndex() {
+		return forward.arcs == 0 ? 0 : 8.0 * (forward.data.length + 4L * forward.index.length) / forward.arcs;
+	}
+
+	public int internalId(int vertexId) {
+		int index = Arrays.binarySearch(sortedIds, vertexId);
+		return index < 0 ? -1 : internalOf[index];
+	}
+
+	public int externalId(int internalId) {
+		return externalOf[internalId];
+	}
+
+	/** 所有顶点的原 id, 升序 */
+	public int[] vertexIds() {
+		return sortedIds.clone();
+	}
+
+	public int outDegree(int vertexId) {
+		Decoder decoder = new Decoder(forward);
+		decoder.position = forward.index[require(vertexId)];
+		return decoder.readVarint() / (window + 1);
+	}
+
+	/** 出弧终点的原 id, 按内部编号的顺序 */
+	public int[] neighbours(int vertexId) {
+		Decoder decoder = new Decoder(forward);
+		int count = decoder.decode(require(vertexId), 0);
+		int[] result = new int[count];
+		for(int k = 0; k < count; k++)
+			result[k] = externalOf[decoder.buffers[0][k]];
+		return result;
+	}
+
+	/** 可以反复 {@link SuccessorIterator#reset(int)} 的出弧迭代器, 不是线程安全的 */
+	public SuccessorIterator successors() {
+		return new SuccessorIterator();
+	}
+
+	/**
+	 * 从 <code>source</code> 出发广度优先访问到的顶点 (原 id), 按访问顺序; 起点不存在时为空数组
+	 */
+	public int[] breadthFirstOrder(int source) {
+		return CompactGraph.breadthFirstOrder(new Decoder(forward), externalOf, internalId(source));
+	}
+
+	/**
+	 * 边数最少的一条路径 (原 id, 含两端), 不可达时为空表
+	 */
+	public List<Integer> pathTo(int source, int destination) {
+		return CompactGraph.pathTo(new Decoder(forward), externalOf, internalId(source), internalId(destination));
+	}
+
+	/* 和 CompactGraph.breadthFirst 相同的约定 */
+	int breadthFirst(int source, int[] queue, int[] parent) {
+		return CompactGraph.breadthFirst(new Decoder(forward), source, queue, parent);
+	}
+
+	/**
+	 * 把弧当作无向边的连通分量, 和 {@link #vertexIds()} 对齐, 编号从 0 开始连续
+	 */
+	public int[] connectedComponents() {
+		return number(CompactGraph.unionFind(new Decoder(forward), externalOf.length));
+	}
+
+	/**
+	 * Kosaraju 算法求强连通分量, 和 {@link #vertexIds()} 对齐, 编号从 0 开始连续.
+	 * 两次深度优先都用显式栈, 解码出的出弧表压在同一个 int 栈上, 不会栈溢出
+	 */
+	public int[] stronglyConnectedComponents() {
+		int n = externalOf.length;
+		/* 反向图的逆后序 */
+		int[] postorder = new int[n];
+		int filled = 0;
+		boolean[] marked = new boolean[n];
+		Decoder decoder = new Decoder(transpose());
+		int[] frames = new int[16];
+		int[] arena = new int[16];
+		for(int root = 0; root < n; root++) {
+			if(marked[root])
+				continue;
+			marked[root] = true;
+			/* 每帧三个数: 顶点, 它的出弧在 arena 里的下一个位置和结束位置 */
+			int top = 0;
+			int count = decoder.decode(root, 0);
+			arena = ensure(arena, count);
+			System.arraycopy(decoder.buffers[0], 0, arena, 0, count);
+			frames[0] = root;
+			frames[1] = 0;
+			frames[2] = count;
+			while(top >= 0) {
+				int base = top * 3;
+				if(frames[base + 1] == frames[base + 2]) {
+					postorder[filled++] = frames[base];
+					top--;
+					continue;
+				}
+				int w = arena[frames[base + 1]++];
+				if(marked[w])
+					continue;
+				marked[w] = true;
+				int start = frames[base + 2];
+				count = decoder.decode(w, 0);
+				arena = ensure(arena, start + count);
+				System.arraycopy(decoder.buffers[0], 0, arena, start, count);
+				frames = ensure(frames, base + 6);
+				frames[base + 3] = w;
+				frames[base + 4] = start;
+				frames[base + 5] = start + count;
+				top++;
+			}
+		}
+		/* 按逆后序在正向图上广度优先, 每次到达的就是一个强连通分量 */
+		int[] group = new int[n];
+		Arrays.fill(group, -1);
+		int[] queue = new int[n];
+		decoder = new Decoder(forward);
+		int[] successors = decoder.buffers[0];
+		int components = 0;
+		for(int i = n - 1; i >= 0; i--) {
+			int root = postorder[i];
+			if(group[root] >= 0)
+				continue;
+			group[root] = components;
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = root;
+			while(head < tail) {
+				int count = decoder.decode(queue[head++], 0);
+				for(int k = 0; k < count; k++) {
+					int w = successors[k];
+					if(group[w] >= 0)
+						continue;
+					group[w] = components;
+					queue[tail++] = w;
+				}
+			}
+			components++;
+		}
+		return number(group);
+	}
+
+	private static int[] ensure(int[] array, int length) {
+		return array.length >= length ? array : Arrays.copyOf(array, Math.max(length, array.length * 2));
+	}
+
+	/* 内部编号上的分组 -> 按原 id 升序对齐, 按第一次出现的顺序重新编号 */
+	private int[] number(int[] group) {
+		int n = group.length;
+		int[] number = new int[n];
+		Arrays.fill(number, -1);
+		int[] result = new int[n];
+		int count = 0;
+		for(int i = 0; i < n; i++) {
+			int g = group[internalOf[i]];
+			if(number[g] < 0)
+				number[g] = count++;
+			result[i] = number[g];
+		}
+		return result;
+	}
+
+	private synchronized Encoded transpose() {
+		if(transpose != null)
+			return transpose;
+		int n = externalOf.length;
+		int[] offsets = new int[n + 1];
+		Decoder decoder = new Decoder(forward);
+		int[] successors = decoder.buffers[0];
+		for(int v = 0; v < n; v++) {
+			int count = decoder.decode(v, 0);
+			for(int k = 0; k < count; k++)
+				offsets[successors[k] + 1]++;
+		}
+		for(int v = 0; v < n; v++)
+			offsets[v + 1] += offsets[v];
+		/* 按起点升序填入, 每个表自然有序 */
+		int[] targets = new int[offsets[n]];
+		int[] cursor = Arrays.copyOf(offsets, n);
+		for(int v = 0; v < n; v++) {
+			int count = decoder.decode(v, 0);
+			for(int k = 0; k < count; k++)
+				targets[cursor[successors[k]]++] = v;
+		}
+		transpose = encode(n, offsets, targets, window);
+		return transpose;
+	}
+
+	private int require(int vertexId) {
+		int v = internalId(vertexId);
+		if(v < 0)
+			throw new IllegalArgumentException("no vertex " + vertexId);
+		return v;
+	}
+
+	/* 一张图的压缩数据: index[v] 是顶点 v 的表在 data 里的起始位置 */
+	private static class Encoded {
+		private final byte[] data;
+		private final int[] index;
+		private final int maxDegree;
+		private final long arcs;
+
+		private Encoded(byte[] data, int[] index, int maxDegree, long arcs) {
+			this.data = data;
+			this.index = index;
+			this.maxDegree = maxDegree;
+			this.arcs = arcs;
+		}
+	}
+
+	private static Encoded encode(int n, int[] offsets, int[] targets, int window) {
+		Output output = new Output(Math.max(16, targets.length + n));
+		Output scratch = new Output(16);
+		Output best = new Output(16);
+		int[] index = new int[n];
+		int[] chain = new int[n];
+		int maxDegree = 0;
+		for(int v = 0; v < n; v++) {
+			index[v] = output.size;
+			maxDegree = Math.max(maxDegree, offsets[v + 1] - offsets[v]);
+			best.size = 0;
+			writeList(best, v, 0, window, offsets, targets);
+			int bestReference = 0;
+			for(int r = 1; r <= window && r <= v; r++) {
+				if(chain[v - r] >= MAX_REFERENCE_CHAIN || offsets[v - r + 1] == offsets[v - r])
+					continue;
+				scratch.size = 0;
+				writeList(scratch, v, r, window, offsets, targets);
+				if(scratch.size < best.size) {
+					Output swap = best;
+					best = scratch;
+					scratch = swap;
+					bestReference = r;
+				}
+			}
+			chain[v] = bestReference == 0 ? 0 : chain[v - bestReference] + 1;
+			output.write(best.bytes, best.size);
+		}
+		return new Encoded(Arrays.copyOf(output.bytes, output.size), index, maxDegree, targets.length);
+	}
+
+	private static void writeList(Output out, int v, int reference, int window, int[] offsets, int[] targets) {
+		int from = offsets[v];
+		int to = offsets[v + 1];
+		if(to - from > (Integer.MAX_VALUE - window) / (window + 1))
+			throw new IllegalArgumentException("out-degree " + (to - from) + " of vertex " + v + " too large for window " + window);
+		out.writeVarint((to - from) * (window + 1) + reference);
+		if(to == from)
+			return;
+		boolean[] copied = null;
+		if(reference > 0) {
+			int u = v - reference;
+			int refFrom = offsets[u];
+			int refTo = offsets[u + 1];
+			copied = new boolean[to - from];
+			/* 复制块: 参照表上交替的 "复制 / 跳过" 段, 最后一段跳过的不写 */
+			int[] blocks = new int[refTo - refFrom + 1];
+			int blockCount = 0;
+			boolean copying = true;
+			int length = 0;
+			int k = from;
+			for(int j = refFrom; j < refTo; j++) {
+				while(k < to && targets[k] < targets[j])
+					k++;
+				boolean inList = k < to && targets[k] == targets[j];
+				if(inList)
+					copied[k - from] = true;
+				if(inList != copying) {
+					blocks[blockCount++] = length;
+					copying = !copying;
+					length = 0;
+				}
+				length++;
+			}
+			if(copying)
+				blocks[blockCount++] = length;
+			out.writeVarint(blockCount);
+			for(int b = 0; b < blockCount; b++)
+				out.writeVarint(b == 0 ? blocks[b] : blocks[b] - 1);
+		}
+		int previous = -1;
+		for(int k = from; k < to; k++) {
+			if(copied != null && copied[k - from])
+				continue;
+			if(previous < 0) {
+				int delta = targets[k] - v;
+				out.writeVarint((delta << 1) ^ (delta >> 31));
+			} else
+				out.writeVarint(targets[k] - previous - 1);
+			previous = targets[k];
+		}
+	}
+
+	private static class Output {
+		private byte[] bytes;
+		private int size;
+
+		private Output(int capacity) {
+			this.bytes = new byte[capacity];
+		}
+
+		private void writeVarint(int value) {
+			if(bytes.length - size < 5)
+				bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + 5));
+			while((value & ~0x7F) != 0) {
+				bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			bytes[size++] = (byte) value;
+		}
+
+		private void write(byte[] source, int length) {
+			if(bytes.length - size < length) {
+				long grown = Math.max((long) bytes.length * 2, (long) size + length);
+				if(grown > Integer.MAX_VALUE - 8)
+					throw new IllegalStateException("compressed graph exceeds 2GB");
+				bytes = Arrays.copyOf(bytes, (int) grown);
+			}
+			System.arraycopy(source, 0, bytes, size, length);
+			size += length;
+		}
+	}
+
+	/* 解码器, 每一层参照一个缓冲区; 不是线程安全的, 每次遍历用一个 */
+	private class Decoder implements CompactGraph.Successors {
+		private final byte[] data;
+		private final int[] index;
+		private final int[][] buffers = new int[MAX_REFERENCE_CHAIN + 1][];
+		private int position;
+
+		private Decoder(Encoded encoded) {
+			this.data = encoded.data;
+			this.index = encoded.index;
+			for(int i = 0; i < buffers.length; i++)
+				buffers[i] = new int[encoded.maxDegree];
+		}
+
+		private int readVarint() {
+			int value = 0;
+			for(int shift = 0; ; shift += 7) {
+				byte b = data[position++];
+				value |= (b & 0x7F) << shift;
+				if(b >= 0)
+					return value;
+			}
+		}
+
+		@Override
+		public int load(int v) {
+			return decode(v, 0);
+		}
+
+		@Override
+		public int get(int k) {
+			return buffers[0][k];
+		}
+
+		/* 把顶点 v 的出弧表解码到 buffers[depth], 返回长度 */
+		private int decode(int v, int depth) {
+			position = index[v];
+			int header = readVarint();
+			int degree = header / (window + 1);
+			if(degree == 0)
+				return 0;
+			int[] out = buffers[depth];
+			int reference = header - degree * (window + 1);
+			int copiedCount = 0;
+			int[] copied = null;
+			if(reference > 0) {
+				int blockCount = readVarint();
+				int afterBlocks;
+				int saved = position;
+				/* 先跳过复制块, 解码参照表后再回来读 */
+				for(int b = 0; b < blockCount; b++)
+					readVarint();
+				afterBlocks = position;
+				int refCount = decode(v - reference, depth + 1);
+				copied = buffers[depth + 1];
+				position = saved;
+				int j = 0;
+				for(int b = 0; b < blockCount; b++) {
+					int length = b == 0 ? readVarint() : readVarint() + 1;
+					if((b & 1) == 0) {
+						for(int end = j + length; j < end; j++)
+							copied[copiedCount++] = copied[j];
+					} else
+						j += length;
+				}
+				if(j > refCount)
+					throw new IllegalStateException("corrupt copy blocks at vertex " + v);
+				position = afterBlocks;
+			}
+			/* 复制的元素和残差都是升序, 合并 */
+			int residuals = degree - copiedCount;
+			int c = 0;
+			int k = 0;
+			int next = -1;
+			if(residuals > 0) {
+				int zigzag = readVarint();
+				next = v + ((zigzag >>> 1) ^ -(zigzag & 1));
+			}
+			while(residuals > 0) {
+				while(c < copiedCount && copied[c] < next)
+					out[k++] = copied[c++];
+				out[k++] = next;
+				if(--residuals > 0)
+					next += readVarint() + 1;
+			}
+			while(c < copiedCount)
+				out[k++] = copied[c++];
+			return k;
+		}
+	}
+
+	/**
+	 * 出弧的迭代器, 返回原 id; {@link #reset(int)} 之后复用, 不分配内存
+	 */
+	public final class SuccessorIterator {
+		private final Decoder decoder = new Decoder(forward);
+		private int count;
+		private int next;
+
+		private SuccessorIterator() {
+		}
+
+		public SuccessorIterator reset(int vertexId) {
+			count = decoder.decode(require(vertexId), 0);
+			next = 0;
+			return this;
+		}
+
+		public boolean hasNext() {
+			return next < count;
+		}
+
+		public int nextInt() {
+			if(next >= count)
+				throw new java.util.NoSuchElementException();
+			return externalOf[decoder.buffers[0][next++]];
+		}
+	}
+
+	/**
+	 * 比较压缩率和遍历速度: 不同编号方式和窗口下的位/弧, 广度优先遍历每扫描一条弧的耗时 (和未压缩的 CSR 对比), 以及连通分量, 强连通分量每条弧的耗时.
+	 * 用法: <code>CompressedGraph [规模] [轮数]</code>
+	 */
+	public static void main(String[] args) {
+		int scale = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		int n = 1 << scale;
+		int side = (int) Math.sqrt(n);
+		Map<String, Graph<Integer, Integer>> graphs = new java.util.LinkedHashMap<String, Graph<Integer, Integer>>();
+		graphs.put("rmat-" + scale, GraphGenerator.shuffled(new DirectedGraph<Integer, Integer>(), n, GraphGenerator.rmat(scale, 8, 20230101L)));
+		graphs.put("grid-" + side + "x" + side, GraphGenerator.shuffled(new UndirectedGraph<Integer, Integer>(null, null), side * side, GraphGenerator.grid(side, side)));
+
+		System.out.println(String.format("%-14s %-9s %6s %9s %9s %11s %11s %11s %11s",
+				"graph", "ordering", "window", "bits/arc", "+index", "CSR BFS", "BFS ns/arc", "CC ns/arc", "SCC ns/arc"));
+		int reached = 0;
+		for(Map.Entry<String, Graph<Integer, Integer>> entry : graphs.entrySet()) {
+			for(CompactGraph.Ordering ordering : new CompactGraph.Ordering[] {CompactGraph.Ordering.IDENTITY, CompactGraph.Ordering.BFS, CompactGraph.Ordering.RCM}) {
+				CompactGraph compact = new CompactGraph(entry.getValue(), ordering);
+				int[] offsets = compact.offsets();
+				/* 从出度最大的顶点出发, 按实际扫描的弧数折算 */
+				int source = 0;
+				for(int v = 0; v < compact.countOfVertex(); v++)
+					if(offsets[v + 1] - offsets[v] > offsets[source + 1] - offsets[source])
+						source = v;
+				int[] queue = new int[compact.countOfVertex()];
+				int visited = compact.breadthFirst(source, queue, null);
+				long scanned = 0;
+				for(int i = 0; i < visited; i++)
+					scanned += offsets[queue[i] + 1] - offsets[queue[i]];
+				for(int r = 0; r < rounds; r++)
+					reached += compact.breadthFirst(source, queue, null);
+				long begin = System.nanoTime();
+				for(int r = 0; r < rounds; r++)
+					reached += compact.breadthFirst(source, queue, null);
+				double csrNanos = (double) (System.nanoTime() - begin) / rounds / scanned;
+				for(int window : new int[] {0, DEFAULT_WINDOW}) {
+					CompressedGraph compressed = new CompressedGraph(compact, window);
+					reached += compressed.stronglyConnectedComponents()[0];
+					for(int r = 0; r < rounds; r++)
+						reached += compressed.breadthFirst(source, queue, null);
+					begin = System.nanoTime();
+					for(int r = 0; r < rounds; r++)
+						reached += compressed.breadthFirst(source, queue, null);
+					double bfsNanos = (double) (System.nanoTime() - begin) / rounds / scanned;
+					begin = System.nanoTime();
+					for(int r = 0; r < rounds; r++)
+						reached += compressed.connectedComponents()[0];
+					double ccNanos = (double) (System.nanoTime() - begin) / rounds / compressed.countOfArc();
+					begin = System.nanoTime();
+					for(int r = 0; r < rounds; r++)
+						reached += compressed.stronglyConnectedComponents()[0];
+					double sccNanos = (double) (System.nanoTime() - begin) / rounds / compressed.countOfArc();
+					System.out.println(String.format("%-14s %-9s %6d %9.2f %9.2f %11.2f %11.2f %11.2f %11.2f", entry.getKey(), ordering, window,
+							compressed.bitsPerArc(), compressed.bitsPerArcWithIndex(), csrNanos, bfsNanos, ccNanos, sccNanos));
+				}
+			}
+		}
+		sink = reached;
+	}
+}
@@ -1,8 +1,10 @@
 package utility;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -35,6 +37,8 @@ public class DirectedGraph<T1 extends Comparable<T1>, T2 extends Number> extends
 		dictionary.put(vertex.id, vertex);
 		adjacency.put(vertex.id, new HashSet<Arc<T2>>());
 		inverseAdjacency.put(vertex.id, new HashSet<Arc<T2>>());
+		indexKey(vertex);
+		version++;
 		return true;
 	}
 
@@ -56,8 +60,10 @@ public class DirectedGraph<T1 extends Comparable<T1>, T2 extends Number> extends
 			inverseAdjacency.put(endid, new HashSet<Arc<T2>>());
 		boolean addTo = adjacency.get(startid).add(new Arc<T2>(endid, comparableKey, startid));
 		boolean addFrom = inverseAdjacency.get(endid).add(new Arc<T2>(startid, comparableKey, endid));
-		if(addTo && addFrom)
+		if(addTo && addFrom) {
 			this.countOfArc++;
+			this.version++;
+		}
 		return addTo && addFrom;
 	}
 
@@ -67,10 +73,21 @@ public class DirectedGraph<T1 extends Comparable<T1>, T2 extends Number> extends
 	}
 	
 	/**
-	 * 反转有向图
+	 * 反转有向图的只读视图, O(1)<br/>
+	 * 不复制任何数据: 视图的邻接表就是本图的逆邻接表, 逆邻接表就是本图的邻接表, 顶点字典共用, 边集按需反转.
+	 * 本图之后的修改在视图上立即可见; 视图本身不能修改, <code>addVertex</code> / <code>addEdge</code> 抛出 <code>UnsupportedOperationException</code>.
+	 * 视图再 <code>reverse()</code> 得到的就是本图. 需要一张独立的图时用 {@link #reverseCopy()}
 	 * @return DirectedGraph&ltT1, T2&gt 
 	 */
 	public DirectedGraph<T1, T2> reverse(){
+		return new ReversedView<T1, T2>(this);
+	}
+	
+	/**
+	 * 反转有向图, 复制出一张独立的新图
+	 * @return DirectedGraph&ltT1, T2&gt 
+	 */
+	public DirectedGraph<T1, T2> reverseCopy(){
 		Set<Vertex<T1>> vertexs = new HashSet<Vertex<T1>>();
 		for(Entry<Integer, Vertex<T1>> e : this.dictionary.entrySet())
 			vertexs.add(e.getValue());
@@ -81,16 +98,95 @@ public class DirectedGraph<T1 extends Comparable<T1>, T2 extends Number> extends
 		return reverseDirectedGraph;
 	}
 	
+	/**
+	 * {@link DirectedGraph#reverse()} 返回的视图, 和原图共用顶点字典, 邻接表和逆邻接表 (互换)
+	 */
+	private static class ReversedView<T1 extends Comparable<T1>, T2 extends Number> extends DirectedGraph<T1, T2>{
+		private final DirectedGraph<T1, T2> original;
+		
+		private ReversedView(DirectedGraph<T1, T2> original) {
+			this.original = original;
+			this.dictionary = original.dictionary;
+			this.adjacency = original.inverseAdjacency;
+			this.inverseAdjacency = original.adjacency;
+			this.keyIndex = original.keyIndex;
+			this.edgeSet = new ReversedEdgeSet<T2>(original.edgeSet);
+		}
+		@Override
+		public boolean addVertex(Vertex<T1> vertex) {
+			throw new UnsupportedOperationException("reversed view is read-only, modify the original graph");
+		}
+		@Override
+		public boolean addEdge(Edge<T2> edge) {
+			throw new UnsupportedOperationException("reversed view is read-only, modify the original graph");
+		}
+		@Override
+		public int countOfArc() {
+			return original.countOfArc();
+		}
+		@Override
+		public long version() {
+			return original.version();
+		}
+		@Override
+		public int recalculateCountOfArc() {
+			return original.recalculateCountOfArc();
+		}
+		@Override
+		public DirectedGraph<T1, T2> reverse(){
+			return original;
+		}
+	}
+	
+	/* 原图边集的反转视图, 起点和终点互换 */
+	private static class ReversedEdgeSet<T2 extends Number> extends AbstractSet<Edge<T2>>{
+		private final Set<Edge<T2>> edges;
+		
+		private ReversedEdgeSet(Set<Edge<T2>> edges) {
+			this.edges = edges;
+		}
+		@Override
+		public Iterator<Edge<T2>> iterator() {
+			Iterator<Edge<T2>> iterator = edges.iterator();
+			return new Iterator<Edge<T2>>() {
+				@Override
+				public boolean hasNext() {
+					return iterator.hasNext();
+				}
+				@Override
+				public Edge<T2> next() {
+					Edge<T2> edge = iterator.next();
+					return new Edge<T2>(edge.getEndid(), edge.getStartid(), edge.getWeight());
+				}
+			};
+		}
+		@Override
+		public boolean contains(Object object) {
+			if(!(object instanceof Edge))
+				return false;
+			Edge<?> edge = (Edge<?>) object;
+			return edges.contains(new Edge<T2>(edge.getEndid(), edge.getStartid()));
+		}
+		@Override
+		public int size() {
+			return edges.size();
+		}
+	}
+	
 	/**
 	 * 有向图的可达性
 	 */
 	public static class Accessibility{
 		private Map<Integer, Boolean> marked;
+		private final TraversalListener listener = Graph.traversalListener();
+		private int depth;
 		
 		public <T1 extends Comparable<T1>, T2 extends Number> Accessibility(
 				DirectedGraph<T1, T2> graph, Set<Integer> vertexIds){
 			this.marked = new HashMap<Integer, Boolean>();
+			listener.started("Accessibility");
 			initialize(graph, vertexIds);
+			listener.finished("Accessibility");
 		}
 		private <T1 extends Comparable<T1>, T2 extends Number> void initialize(
 				DirectedGraph<T1, T2> graph, Set<Integer> vertexIds){
@@ -103,12 +199,17 @@ public class DirectedGraph<T1 extends Comparable<T1>, T2 extends Number> extends
 		private <T1 extends Comparable<T1>, T2 extends Number> void depthFirstSearch(
 				DirectedGraph<T1, T2> graph, int vertexId){
 			marked.put(vertexId, true);
+			listener.visited(vertexId);
+			listener.depth(depth);
 			if(graph.adjacency == null || !graph.adjacency.containsKey(vertexId))
 				return;
 			for(Arc<T2> neighbour : graph.adjacency.get(vertexId)) {
+				listener.scanned(vertexId, neighbour.getId());
 				if(marked.containsKey(neighbour.getId()) && marked.get(neighbour.getId()).booleanValue())
 					continue;
+				depth++;
 				depthFirstSearch(graph, neighbour.getId());
+				depth--;
 			}
 		}
 		public Map<Integer, Boolean> result(){
@@ -126,6 +227,8 @@ public class DirectedGraph<T1 extends Comparable<T1>, T2 extends Number> extends
 		private Map<Integer, Boolean> onStack;
 		/* 所有构成环的节点 */
 		private List<List<Integer>> cycles;
+		private final TraversalListener listener = Graph.traversalListener();
+		private int depth;
 		
 		public <T1 extends Comparable<T1>, T2 extends Number> CycleDetecting(DirectedGraph<T1, T2> graph){
 			this.marked = new HashMap<Integer, Boolean>();
@@ -133,7 +236,9 @@ public class DirectedGraph<T1 extends Comparable<T1>, T2 extends Number> extends
 			this.cycleStack = null;
 			this.onStack = new HashMap<Integer, Boolean>();
 			this.cycles = new ArrayList<List<Integer>>();
+			listener.started("CycleDetecting");
 			initialize(graph);
+			listener.finished("CycleDetecting");
 		}
 		private <T1 extends Comparable<T1>, T2 extends Number> void initialize(DirectedGraph<T1, T2> graph){
 			Set<Integer> vertexIds = graph.adjacency.keySet();
@@ -145,13 +250,18 @@ public class DirectedGraph<T1 extends Comparable<T1>, T2 extends Number> extends
 		private <T1 extends Comparable<T1>, T2 extends Number> void depthFirstSearch(
 				DirectedGraph<T1, T2> graph, int vertexId){
 			marked.put(vertexId, true);
+			listener.visited(vertexId);
+			listener.depth(depth);
 			if(graph.adjacency == null || !graph.adjacency.containsKey(vertexId))
 				return;
 			onStack.put(vertexId, true);
 			for(Arc<T2> neighbour : graph.adjacency.get(vertexId)) {
+				listener.scanned(vertexId, neighbour.getId());
 				if(!marked.containsKey(neighbour.getId()) || !marked.get(neighbour.getId()).booleanValue()) {
 					edgeTo.put(neighbour.getId(), vertexId);
+					depth++;
 					depthFirstSearch(graph, neighbour.getId());
+					depth--;
 				}
 				else if(onStack.containsKey(neighbour.getId()) && onStack.get(neighbour.getId()).booleanValue()) {
 					cycleStack = new LinkedList<Integer>();
@@ -176,16 +286,21 @@ public class DirectedGraph<T1 extends Comparable<T1>, T2 extends Number> extends
 		private List<Integer> preorder;
 		private List<Integer> postorder;
 		private List<Integer> reversePost;
+		private final TraversalListener listener = Graph.traversalListener();
+		private int depth;
 		
 		public <T1 extends Comparable<T1>, T2 extends Number> DepthFirstOrder(DirectedGraph<T1, T2> graph){
 			this.marked = new HashMap<Integer, Boolean>();
 			this.preorder = new LinkedList<Integer>();
 			this.postorder = new LinkedList<Integer>();
 			this.reversePost = new LinkedList<Integer>();
+			listener.started("DepthFirstOrder");
 			initialize(graph);
+			listener.finished("DepthFirstOrder");
 		}
 		private <T1 extends Comparable<T1>, T2 extends Number> void initialize(DirectedGraph<T1, T2> graph) {
-			Set<Integer> vertexIds = graph.adjacency.keySet();
+			/* 用顶点字典而不是邻接表的 key, 没有出弧的顶点 (反转视图里就是原图没有入弧的顶点) 也要排进去 */
+			Set<Integer> vertexIds = graph.dictionary.keySet();
 			for(int vertexId : vertexIds) {
 				if(!marked.containsKey(vertexId) || !marked.get(vertexId).booleanValue())
 					depthFirstSearch(graph, vertexId);
@@ -195,10 +310,17 @@ public class DirectedGraph<T1 extends Comparable<T1>, T2 extends Number> extends
 				DirectedGraph<T1, T2> graph, int vertexId) {
 			preorder.add(vertexId);
 			marked.put(vertexId, true);
+			listener.visited(vertexId);
+			listener.depth(depth);
 			if(graph.adjacency != null && graph.adjacency.containsKey(vertexId)) 
-				for(Arc<T2> neighbour : graph.adjacency.get(vertexId))
-					if(!marked.containsKey(neighbour.getId()) || !marked.get(neighbour.getId()).booleanValue())
+				for(Arc<T2> neighbour : graph.adjacency.get(vertexId)) {
+					listener.scanned(vertexId, neighbour.getId());
+					if(!marked.containsKey(neighbour.getId()) || !marked.get(neighbour.getId()).booleanValue()) {
+						depth++;
 						depthFirstSearch(graph, neighbour.getId());
+						depth--;
+					}
+				}
 			postorder.add(vertexId);
 			reversePost.add(0, vertexId);
 		}
@@ -224,11 +346,14 @@ public class DirectedGraph<T1 extends Comparable<T1>, T2 extends Number> extends
 			this.order = new LinkedList<Integer>();
 		}
 		public <T1 extends Comparable<T1>, T2 extends Number>Topological(DirectedGraph<T1, T2> graph){
+			TraversalListener listener = Graph.traversalListener();
+			listener.started("Topological");
 			DirectedGraph.CycleDetecting cyclefinder = new DirectedGraph.CycleDetecting(graph);
 			if(cyclefinder.cycles().isEmpty()) {
 				DirectedGraph.DepthFirstOrder depthFirstOrder = new DirectedGraph.DepthFirstOrder(graph);
 				order = depthFirstOrder.reversePost();
 			}
+			listener.finished("Topological");
 		}
 		public List<Integer> order(){
 			return order;
@@ -244,15 +369,20 @@ public class DirectedGraph<T1 extends Comparable<T1>, T2 extends Number> extends
 		private Map<Integer, Boolean> marked;
 		private Map<Integer, Integer> group;
 		private int count;
+		private final TraversalListener listener = Graph.traversalListener();
+		private int depth;
 		
 		public <T1 extends Comparable<T1>, T2 extends Number> Kosaraju(DirectedGraph<T1, T2> graph){
 			this.marked = new HashMap<Integer, Boolean>();
 			this.group = new HashMap<Integer, Integer>();
 			this.count = 0;
+			listener.started("Kosaraju");
 			initialize(graph);
+			listener.finished("Kosaraju");
 		}
 		private <T1 extends Comparable<T1>, T2 extends Number> void initialize(DirectedGraph<T1, T2> graph) {
-			DirectedGraph.DepthFirstOrder depthFirstOrder = new DirectedGraph.DepthFirstOrder(graph);
+			/* 反向图的逆后序决定正向图上 DFS 的起点顺序, 反向图只是视图, 不复制 */
+			DirectedGraph.DepthFirstOrder depthFirstOrder = new DirectedGraph.DepthFirstOrder(graph.reverse());
 			for(int vertexId : depthFirstOrder.reversePost()) {
 				if(!marked.containsKey(vertexId) || !marked.get(vertexId).booleanValue()) {
 					depthFirstSearch(graph, vertexId);
@@ -263,11 +393,18 @@ public class DirectedGraph<T1 extends Comparable<T1>, T2 extends Number> extends
 		private <T1 extends Comparable<T1>, T2 extends Number> void depthFirstSearch(
 				DirectedGraph<T1, T2> graph, int vertexId) {
 			marked.put(vertexId, true);
+			listener.visited(vertexId);
+			listener.depth(depth);
 			group.put(vertexId, count);
 			if(graph.adjacency != null && graph.adjacency.containsKey(vertexId))
-				for(Arc<T2> neighbour : graph.adjacency.get(vertexId))
-					if(!marked.containsKey(neighbour.getId()) || !marked.get(neighbour.getId()).booleanValue())
+				for(Arc<T2> neighbour : graph.adjacency.get(vertexId)) {
+					listener.scanned(vertexId, neighbour.getId());
+					if(!marked.containsKey(neighbour.getId()) || !marked.get(neighbour.getId()).booleanValue()) {
+						depth++;
 						depthFirstSearch(graph, neighbour.getId());
+						depth--;
+					}
+				}
 		}
 		public boolean stronglyConnected(int vertexId1, int vertexId2) {
 			if(!group.containsKey(vertexId1) || !group.containsKey(vertexId2))
@@ -0,0 +1,82 @@
+package utility;
+
+import java.util.Arrays;
+
+/**
+ * 权重为 double 的 {@link CompactGraph}<br/><br/>
+ *
+ * 和 {@link IntWeightedGraph} 相同, 只是权重存成 <code>double[]</code>, 距离也是 double. 权重不能是 NaN.
+ */
+public class DoubleWeightedGraph extends CompactGraph {
+
+	private final double[] weights;
+	private final boolean negative;
+
+	public <T1 extends Comparable<T1>, T2 extends Number> DoubleWeightedGraph(Graph<T1, T2> graph) {
+		this(graph, Ordering.BFS);
+	}
+
+	public <T1 extends Comparable<T1>, T2 extends Number> DoubleWeightedGraph(Graph<T1, T2> graph, Ordering ordering) {
+		super(graph, ordering);
+		double[] weights = new double[countOfArc()];
+		forEachArc(graph, (position, weight) -> weights[position] = weight == null ? 1 : weight.doubleValue());
+		boolean negative = false;
+		for(double weight : weights) {
+			if(Double.isNaN(weight))
+				throw new IllegalArgumentException("NaN weight");
+			negative |= weight < 0;
+		}
+		this.weights = weights;
+		this.negative = negative;
+	}
+
+	/** 弧 <code>fromId -&gt toId</code> 的权重, 没有这条弧时抛出 <code>IllegalArgumentException</code> */
+	public double weight(int fromId, int toId) {
+		int position = arcPosition(require(fromId), require(toId));
+		if(position < 0)
+			throw new IllegalArgumentException("no arc " + fromId + " -> " + toId);
+		return weights[position];
+	}
+
+	/** 出弧的权重, 和 {@link #neighbours(int)} 对齐 */
+	public double[] weights(int vertexId) {
+		int v = require(vertexId);
+		return Arrays.copyOfRange(weights, offsets()[v], offsets()[v + 1]);
+	}
+
+	/**
+	 * Dijkstra 单源最短路径, 有负权重时抛出 <code>UnsupportedOperationException</code>
+	 */
+	public DoubleShortestPaths shortestPaths(int source) {
+		if(negative)
+			throw new UnsupportedOperationException("Dijkstra needs non-negative weights");
+		int s = require(source);
+		int[] offsets = offsets();
+		int[] targets = targets();
+		int n = countOfVertex();
+		double[] distance = new double[n];
+		int[] parent = new int[n];
+		Arrays.fill(distance, Double.POSITIVE_INFINITY);
+		Arrays.fill(parent, -2);
+		distance[s] = 0;
+		parent[s] = -1;
+		PrimitiveHeap.DoubleKeyed heap = new PrimitiveHeap.DoubleKeyed();
+		heap.push(0, s);
+		while(!heap.isEmpty()) {
+			double d = heap.peekKey();
+			int v = heap.pop();
+			if(d > distance[v])
+				continue;
+			for(int k = offsets[v], end = offsets[v + 1]; k < end; k++) {
+				int w = targets[k];
+				double candidate = d + weights[k];
+				if(candidate < distance[w]) {
+					distance[w] = candidate;
+					parent[w] = v;
+					heap.push(candidate, w);
+				}
+			}
+		}
+		return new DoubleShortestPaths(this, s, parent, distance);
+	}
+}
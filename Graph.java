@@ -1,4 +1,5 @@
 package utility;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -7,8 +8,12 @@ import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 /**
  * 图<br/><br/>
@@ -22,6 +27,7 @@ import java.util.Set;
  * 	<li><b>顶点字典 (<code>dictionary</code>)</b> : key = 顶点id, value = 顶点本身</li>
  * 	<li><b>邻接表 (<code>adjacency</code>)</b> : key = 顶点id, value = 从 <code>key</code> 表示的顶点出发, 能到达相邻节点的 <b>弧 (<code>Arc</code>)</b></li>
  * 	<li><b>逆邻接表 (<code>inverseAdjacency</code>)</b> : key = 顶点id, value = 从其它顶点出发, 能到达 <code>key</code> 表示的顶点的 <b>弧 (<code>Arc</code>)</b></li>
+ * 	<li><b>关键字索引 (<code>keyIndex</code>)</b> : 按 <code>comparableKey</code> 排序, key = 顶点的关键字, value = 关键字相同的顶点id, 随 <code>addVertex</code> 维护</li>
  * </ul>
  * <div>
  * 	构造器内完成初始化 (邻接表和逆邻接表的构造), 顺序为先完成顶点 (<code>Vertex</code>) 的初始化, 确定图中顶点的数量和标志, 
@@ -41,17 +47,25 @@ import java.util.Set;
  * @param <T2> 要求实现 Number 接口, 用于计算带权图
  */
 public abstract class Graph<T1 extends Comparable<T1>, T2 extends Number> {
+	/* 遍历类构造时读取一次, 默认什么都不做 */
+	private static volatile TraversalListener traversalListener = TraversalListener.NOOP;
+	
 	protected int countOfArc;
+	/* addVertex / addEdge 每次成功修改图时加一, 缓存用它判断结果是否过期 */
+	protected long version;
 	protected Set<Edge<T2>> edgeSet;
 	protected Map<Integer, Vertex<T1>> dictionary;
 	protected Map<Integer, Set<Arc<T2>>> adjacency;
 	protected Map<Integer, Set<Arc<T2>>> inverseAdjacency;
+	/* 关键字为 null 的顶点不进索引 */
+	protected NavigableMap<T1, NavigableSet<Integer>> keyIndex;
 	
 	public Graph() {
 		this.edgeSet = new HashSet<Edge<T2>>();
 		this.dictionary = new HashMap<Integer, Vertex<T1>>();
 		this.adjacency = new HashMap<Integer, Set<Arc<T2>>>();
 		this.inverseAdjacency = new HashMap<Integer, Set<Arc<T2>>>();
+		this.keyIndex = new TreeMap<T1, NavigableSet<Integer>>();
 	}
 	
 	public Graph(Set<Vertex<T1>> vertexs) {
@@ -71,7 +85,19 @@ public abstract class Graph<T1 extends Comparable<T1>, T2 extends Number> {
 		while(iterator.hasNext()) {
 			vertex = iterator.next();
 			dictionary.put(vertex.getId(), vertex);
+			indexKey(vertex);
+		}
+	}
+	/* 子类的 addVertex 成功后调用 */
+	protected void indexKey(Vertex<T1> vertex) {
+		if(vertex.comparableKey == null)
+			return;
+		NavigableSet<Integer> ids = keyIndex.get(vertex.comparableKey);
+		if(ids == null) {
+			ids = new TreeSet<Integer>();
+			keyIndex.put(vertex.comparableKey, ids);
 		}
+		ids.add(vertex.id);
 	}
 	private void initializeEdges(Set<Edge<T2>> edges) {
 		if(edges == null || edges.isEmpty())
@@ -89,6 +115,51 @@ public abstract class Graph<T1 extends Comparable<T1>, T2 extends Number> {
 		return countOfArc;
 	}
 	
+	/**
+	 * 图的修改计数, 每次 <code>addVertex</code> / <code>addEdge</code> 成功后加一
+	 */
+	public long version() {
+		return version;
+	}
+	
+	/**
+	 * 关键字等于 <code>key</code> 的顶点中 id 最小的一个, 没有时返回 -1; O(log n)
+	 */
+	public int vertexIdOf(T1 key) {
+		NavigableSet<Integer> ids = key == null ? null : keyIndex.get(key);
+		return ids == null ? -1 : ids.first();
+	}
+	
+	/**
+	 * 关键字等于 <code>key</code> 的所有顶点id, 升序
+	 */
+	public Set<Integer> vertexIdsOf(T1 key) {
+		Set<Integer> ids = key == null ? null : keyIndex.get(key);
+		return ids == null ? Collections.<Integer>emptySet() : Collections.unmodifiableSet(ids);
+	}
+	
+	/**
+	 * 关键字在 [<code>fromKey</code>, <code>toKey</code>) 内的所有顶点id, 按关键字排序, 关键字相同的按 id 排序; O(log n + k)<br/>
+	 * 和 {@link #vertexIdOf(Comparable)} 一样, null 关键字不匹配任何顶点, 任一端为 null 时返回空表
+	 */
+	public List<Integer> verticesInRange(T1 fromKey, T1 toKey) {
+		List<Integer> result = new ArrayList<Integer>();
+		if(fromKey == null || toKey == null || fromKey.compareTo(toKey) >= 0)
+			return result;
+		for(Set<Integer> ids : keyIndex.subMap(fromKey, true, toKey, false).values())
+			result.addAll(ids);
+		return result;
+	}
+	
+	/**
+	 * 加入图之后又用 <code>Vertex.setKey</code> 改了关键字时, 调用它按当前的关键字重建索引
+	 */
+	public void rebuildKeyIndex() {
+		keyIndex.clear();
+		for(Vertex<T1> vertex : dictionary.values())
+			indexKey(vertex);
+	}
+	
 	public int recalculateCountOfArc() {
 		int result = 0;
 		for(int vertexId : adjacency.keySet())
@@ -97,6 +168,17 @@ public abstract class Graph<T1 extends Comparable<T1>, T2 extends Number> {
 		return countOfArc;
 	}
 	
+	/**
+	 * 安装全局的遍历监听器, 之后新建的遍历对象都向它报告; 传 null 恢复为 {@link TraversalListener#NOOP}
+	 */
+	public static void setTraversalListener(TraversalListener listener) {
+		traversalListener = listener == null ? TraversalListener.NOOP : listener;
+	}
+	
+	public static TraversalListener traversalListener() {
+		return traversalListener;
+	}
+	
 	public abstract boolean addVertex(Vertex<T1> vertex);
 	
 	public abstract boolean addEdge(Edge<T2> edge);
@@ -146,6 +228,8 @@ public abstract class Graph<T1 extends Comparable<T1>, T2 extends Number> {
 		/* key=当前的目的地节点, value=目的地节点的前一个节点 */
 		private Map<Integer, Integer> from;
 		private int startid;
+		private final TraversalListener listener = Graph.traversalListener();
+		private int depth;
 		
 		
 		/**
@@ -159,6 +243,7 @@ public abstract class Graph<T1 extends Comparable<T1>, T2 extends Number> {
 			Set<Integer> vertexIds = graph.unmodifiableVertexDictionary().keySet();
 			marked = new HashMap<Integer, Boolean>(vertexIds.size());
 			from = new HashMap<Integer, Integer>();
+			listener.started("DepthFirstPaths");
 			Iterator<Integer> iterator = sources.iterator();
 			while(iterator.hasNext()) {
 				int vertexId = iterator.next();
@@ -166,6 +251,7 @@ public abstract class Graph<T1 extends Comparable<T1>, T2 extends Number> {
 					continue;
 				depthFirstSearch(graph, vertexId);
 			}
+			listener.finished("DepthFirstPaths");
 		}
 		
 		public <T1 extends Comparable<T1>, T2 extends Number> DepthFirstPaths(Graph<T1, T2> graph, int startid) {
@@ -173,18 +259,25 @@ public abstract class Graph<T1 extends Comparable<T1>, T2 extends Number> {
 			marked = new HashMap<Integer, Boolean>(vertexIds.size());
 			from = new HashMap<Integer, Integer>();
 			this.startid = startid;
+			listener.started("DepthFirstPaths");
 			depthFirstSearch(graph, startid);
+			listener.finished("DepthFirstPaths");
 		}
 		private <T1 extends Comparable<T1>, T2 extends Number> void depthFirstSearch(Graph<T1, T2> graph, int origin) {
 			marked.put(origin, true);
+			listener.visited(origin);
+			listener.depth(depth);
 			Map<Integer, Set<Arc<T2>>> adjacency = graph.unmodifiableAdjacency();
 			if(adjacency == null || !adjacency.containsKey(origin))
 				return;
 			for(Arc<T2> arc : adjacency.get(origin)) {
+				listener.scanned(origin, arc.id);
 				if(marked.containsKey(arc.id) && marked.get(arc.id).booleanValue())
 					continue;
 				from.put(arc.id, origin);
+				depth++;
 				depthFirstSearch(graph, arc.id);
+				depth--;
 			}
 		}
 		
@@ -213,21 +306,45 @@ public abstract class Graph<T1 extends Comparable<T1>, T2 extends Number> {
 		private Map<Integer, Boolean> marked;
 		/* key=当前的目的地节点, value=目的地节点的前一个节点 */
 		private Map<Integer, Integer> from;
-		private int startid;
+		
+		private final TraversalListener listener = Graph.traversalListener();
 		
 		public <T1 extends Comparable<T1>, T2 extends Number> BreadthFirstPaths(Graph<T1, T2> graph, int startid) {
 			this.marked = new HashMap<Integer, Boolean>();
 			this.from = new HashMap<Integer, Integer>();
-			this.startid = startid;
-			breadthFirstSearch(graph, startid);
+			listener.started("BreadthFirstPaths");
+			breadthFirstSearch(graph, Collections.singletonList(startid));
+			listener.finished("BreadthFirstPaths");
 		}
-		private <T1 extends Comparable<T1>, T2 extends Number> void breadthFirstSearch(Graph<T1, T2> graph, int origin) {
+		
+		/**
+		 * 多起点的广度优先搜索, 每个顶点的路径从离它最近的起点出发
+		 */
+		public <T1 extends Comparable<T1>, T2 extends Number> BreadthFirstPaths(Graph<T1, T2> graph, Iterable<Integer> sources) {
+			this.marked = new HashMap<Integer, Boolean>();
+			this.from = new HashMap<Integer, Integer>();
+			listener.started("BreadthFirstPaths");
+			breadthFirstSearch(graph, sources);
+			listener.finished("BreadthFirstPaths");
+		}
+		
+		/**
+		 * 以关键字在 [<code>fromKey</code>, <code>toKey</code>) 内的所有顶点为起点的广度优先搜索, 起点由关键字索引查出
+		 */
+		public <T1 extends Comparable<T1>, T2 extends Number> BreadthFirstPaths(Graph<T1, T2> graph, T1 fromKey, T1 toKey) {
+			this(graph, graph.verticesInRange(fromKey, toKey));
+		}
+		
+		private <T1 extends Comparable<T1>, T2 extends Number> void breadthFirstSearch(Graph<T1, T2> graph, Iterable<Integer> origins) {
 			List<Integer> queue = new LinkedList<Integer>();
-			marked.put(origin, true);
-			queue.add(origin);
+			for(int origin : origins) {
+				if(marked.containsKey(origin))
+					continue;
+				marked.put(origin, true);
+				listener.visited(origin);
+				queue.add(origin);
+			}
 			Map<Integer, Set<Arc<T2>>> adjacency = graph.unmodifiableAdjacency();
-			if(!adjacency.containsKey(origin))
-				return;
 			Set<Arc<T2>> neighbours = null;
 			while(!queue.isEmpty()) {
 				int current = queue.remove(0);
@@ -235,12 +352,15 @@ public abstract class Graph<T1 extends Comparable<T1>, T2 extends Number> {
 				if(neighbours == null || neighbours.isEmpty())
 					continue;
 				for(Arc<T2> neighbour : neighbours) {
+					listener.scanned(current, neighbour.id);
 					if(marked.containsKey(neighbour.id) && marked.get(neighbour.id).booleanValue())
 						continue;
 					from.put(neighbour.id, current);
 					marked.put(neighbour.id, true);
+					listener.visited(neighbour.id);
 					queue.add(neighbour.id);
 				}
+				listener.frontier(queue.size());
 			}
 		}
 		
@@ -252,12 +372,13 @@ public abstract class Graph<T1 extends Comparable<T1>, T2 extends Number> {
 			List<Integer> path = new LinkedList<Integer>();
 			if(!hasPathTo(destination))
 				return path;
+			/* 起点没有前驱, 多起点时路径从到达它的那个起点开始 */
 			int currentId = destination;
-			while(currentId != startid && from.containsKey(currentId)) {
+			while(from.containsKey(currentId)) {
 				path.add(0, currentId);
 				currentId = from.get(currentId);
 			}
-			path.add(0, startid);
+			path.add(0, currentId);
 			return path;
 		}
 	}
@@ -269,12 +390,16 @@ public abstract class Graph<T1 extends Comparable<T1>, T2 extends Number> {
 		/* key=节点id, value=所属连通分量的编号 */
 		private Map<Integer, Integer> group;
 		private int count;
+		private final TraversalListener listener = Graph.traversalListener();
+		private int depth;
 		
 		public <T1 extends Comparable<T1>, T2 extends Number> ConnectedComponent(Graph<T1, T2> graph){
 			marked = new HashMap<Integer, Boolean>();
 			group = new HashMap<Integer, Integer>();
 			count = 0;
+			listener.started("ConnectedComponent");
 			initialize(graph);
+			listener.finished("ConnectedComponent");
 		}
 		private <T1 extends Comparable<T1>, T2 extends Number> void initialize(Graph<T1, T2> graph) {
 			Set<Integer> vertexIds = graph.dictionary.keySet();
@@ -287,13 +412,18 @@ public abstract class Graph<T1 extends Comparable<T1>, T2 extends Number> {
 		}
 		private <T1 extends Comparable<T1>, T2 extends Number> void depthFirstSearch(Graph<T1, T2> graph, int vertexId) {
 			marked.put(vertexId, true);
+			listener.visited(vertexId);
+			listener.depth(depth);
 			group.put(vertexId, count);
 			if(graph.adjacency == null || !graph.adjacency.containsKey(vertexId))
 				return;
 			for(Arc<T2> neighbour : graph.adjacency.get(vertexId)) {
+				listener.scanned(vertexId, neighbour.id);
 				if(marked.containsKey(neighbour.id) && marked.get(neighbour.id).booleanValue())
 					continue;
+				depth++;
 				depthFirstSearch(graph, neighbour.id);
+				depth--;
 			}
 		}
 		
@@ -0,0 +1,210 @@
+package utility;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * utility 图算法的基准测试<br/><br/>
+ *
+ * 在 {@link GraphGenerator} 生成的 R-MAT, Erdős–Rényi, 网格和长链图上, 测量构造 (<code>addVertex</code>/<code>addEdge</code>),
+ * <code>BreadthFirstPaths</code>, <code>DepthFirstPaths</code>, <code>ConnectedComponent</code>, <code>Kosaraju</code>,
+ * <code>Topological</code>, <code>CycleDetecting</code>. 每个组合先预热再计时, 输出 ops/s, 每次操作分配的字节数和堆的峰值.<br/>
+ * 给出基准文件时和上一次保存的 ops/s 比较, 慢了 10% 以上的标记出来; 加 <code>--save</code> 则把本次结果写成新的基准.<br/>
+ * 用法: <code>GraphBenchmark [规模] [预热毫秒] [计时毫秒] [基准文件] [--save]</code>, 规模是 R-MAT 的 scale, 其它图的大小随之变化
+ */
+public class GraphBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int scale = args.length > 0 ? Integer.parseInt(args[0]) : 14;
+		long warmupMillis = args.length > 1 ? Long.parseLong(args[1]) : 200;
+		long measureMillis = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+		Path baseline = args.length > 3 ? Paths.get(args[3]) : null;
+		boolean save = args.length > 4 && args[4].equals("--save");
+		GraphBenchmark benchmark = new GraphBenchmark(warmupMillis, measureMillis);
+		/* 现有的遍历都是递归实现, 长链和网格上需要很深的栈 */
+		Thread runner = new Thread(null, () -> benchmark.run(scale), "graph-benchmark", 1L << 30);
+		runner.start();
+		runner.join();
+		if(baseline != null)
+			benchmark.compare(baseline, save);
+	}
+
+	private static final long SEED = 20230101L;
+	private static final double REGRESSION = 0.9;
+
+	private final long warmupNanos;
+	private final long measureNanos;
+	private final com.sun.management.ThreadMXBean threads;
+	private final Map<String, Double> results = new LinkedHashMap<String, Double>();
+	private volatile int sink;
+
+	public GraphBenchmark(long warmupMillis, long measureMillis) {
+		this.warmupNanos = warmupMillis * 1_000_000L;
+		this.measureNanos = measureMillis * 1_000_000L;
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported())
+			this.threads = (com.sun.management.ThreadMXBean) bean;
+		else
+			this.threads = null;
+	}
+
+	public void run(int scale) {
+		int n = 1 << scale;
+		int side = (int) Math.sqrt(n);
+		Map<String, Workload> workloads = new LinkedHashMap<String, Workload>();
+		workloads.put("rmat-" + scale, new Workload(n, GraphGenerator.rmat(scale, 8, SEED)));
+		workloads.put("er-" + n, new Workload(n, GraphGenerator.erdosRenyi(n, 8 * n, SEED)));
+		workloads.put("grid-" + side + "x" + side, new Workload(side * side, GraphGenerator.grid(side, side)));
+		workloads.put("chain-" + n, new Workload(n, GraphGenerator.chain(n)));
+
+		System.out.println(String.format("%-18s %-20s %12s %14s %12s", "graph", "operation", "ops/s", "bytes/op", "peak heap MB"));
+		for(Map.Entry<String, Workload> entry : workloads.entrySet()) {
+			Workload workload = entry.getValue();
+			DirectedGraph<Integer, Integer> directed = workload.directed();
+			UndirectedGraph<Integer, Integer> undirected = workload.undirected();
+
+			Map<String, Supplier<Object>> operations = new LinkedHashMap<String, Supplier<Object>>();
+			operations.put("build directed", workload::directed);
+			operations.put("build undirected", workload::undirected);
+			operations.put("BreadthFirstPaths", () -> new Graph.BreadthFirstPaths(directed, 0));
+			operations.put("DepthFirstPaths", () -> new Graph.DepthFirstPaths(directed, 0));
+			operations.put("ConnectedComponent", () -> new Graph.ConnectedComponent(undirected));
+			operations.put("Kosaraju", () -> new DirectedGraph.Kosaraju(directed));
+			operations.put("Topological", () -> new DirectedGraph.Topological(directed));
+			operations.put("CycleDetecting", () -> new DirectedGraph.CycleDetecting(directed));
+
+			for(Map.Entry<String, Supplier<Object>> operation : operations.entrySet()) {
+				String name = entry.getKey() + " " + operation.getKey();
+				Result result;
+				try {
+					result = measure(operation.getValue());
+				} catch (StackOverflowError e) {
+					System.out.println(String.format("%-18s %-20s %12s", entry.getKey(), operation.getKey(), "StackOverflowError"));
+					continue;
+				}
+				results.put(name, result.opsPerSecond);
+				System.out.println(String.format("%-18s %-20s %12.2f %14s %12.1f", entry.getKey(), operation.getKey(),
+						result.opsPerSecond, result.bytesPerOp < 0 ? "n/a" : String.format("%.0f", result.bytesPerOp),
+						result.peakHeapBytes / 1048576.0));
+			}
+		}
+	}
+
+	/* 和基准文件逐项比较 ops/s; save 时覆盖基准 */
+	private void compare(Path path, boolean save) throws IOException {
+		if(Files.exists(path)) {
+			Properties baseline = new Properties();
+			try(Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+				baseline.load(reader);
+			}
+			System.out.println();
+			System.out.println(String.format("%-40s %12s %12s %8s", "vs " + path.getFileName(), "baseline", "now", "ratio"));
+			for(Map.Entry<String, Double> entry : results.entrySet()) {
+				String previous = baseline.getProperty(entry.getKey());
+				if(previous == null)
+					continue;
+				double ratio = entry.getValue() / Double.parseDouble(previous);
+				System.out.println(String.format("%-40s %12s %12.2f %7.2fx%s", entry.getKey(), previous, entry.getValue(), ratio,
+						ratio < REGRESSION ? "  REGRESSION" : ""));
+			}
+		} else if(!save) {
+			System.out.println("no baseline at " + path + ", run with --save to create one");
+		}
+		if(save) {
+			Properties current = new Properties();
+			for(Map.Entry<String, Double> entry : results.entrySet())
+				current.setProperty(entry.getKey(), String.format("%.2f", entry.getValue()));
+			try(Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+				current.store(writer, "GraphBenchmark ops/s");
+			}
+		}
+	}
+
+	private Result measure(Supplier<Object> operation) {
+		loop(operation, warmupNanos);
+		resetPeakHeap();
+		long allocatedBefore = allocatedBytes();
+		long begin = System.nanoTime();
+		long ops = loop(operation, measureNanos);
+		long elapsed = System.nanoTime() - begin;
+		long allocatedAfter = allocatedBytes();
+		Result result = new Result();
+		result.opsPerSecond = ops * 1e9 / elapsed;
+		result.bytesPerOp = threads == null ? -1 : (double) (allocatedAfter - allocatedBefore) / ops;
+		result.peakHeapBytes = peakHeap();
+		return result;
+	}
+
+	private long loop(Supplier<Object> operation, long budgetNanos) {
+		long deadline = System.nanoTime() + budgetNanos;
+		long ops = 0;
+		int hashes = 0;
+		do {
+			hashes += System.identityHashCode(operation.get());
+			ops++;
+		} while(System.nanoTime() < deadline);
+		sink += hashes;
+		return ops;
+	}
+
+	private long allocatedBytes() {
+		return threads == null ? 0 : threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static void resetPeakHeap() {
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			if(pool.getType() == MemoryType.HEAP)
+				pool.resetPeakUsage();
+	}
+
+	/* 各堆内存池峰值之和, 各池的峰值不一定同时出现, 所以是上界 */
+	private static long peakHeap() {
+		long peak = 0;
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			if(pool.getType() == MemoryType.HEAP)
+				peak += pool.getPeakUsage().getUsed();
+		return peak;
+	}
+
+	public Map<String, Double> results() {
+		return Collections.unmodifiableMap(results);
+	}
+
+	private static class Workload {
+		private final int vertexCount;
+		private final int[] edges;
+
+		private Workload(int vertexCount, int[] edges) {
+			this.vertexCount = vertexCount;
+			this.edges = edges;
+		}
+
+		private DirectedGraph<Integer, Integer> directed() {
+			return GraphGenerator.populate(new DirectedGraph<Integer, Integer>(), vertexCount, edges);
+		}
+
+		private UndirectedGraph<Integer, Integer> undirected() {
+			return GraphGenerator.populate(new UndirectedGraph<Integer, Integer>(null, null), vertexCount, edges);
+		}
+	}
+
+	private static class Result {
+		private double opsPerSecond;
+		private double bytesPerOp;
+		private long peakHeapBytes;
+	}
+}
@@ -0,0 +1,119 @@
+package utility;
+
+import java.util.Random;
+
+/**
+ * 可复现的合成图生成器<br/><br/>
+ *
+ * 生成的边以扁平数组 <code>[start0, end0, start1, end1, ...]</code> 返回, 顶点编号为 <code>0 .. vertexCount - 1</code>,
+ * 同一个种子总是得到同一张图. 用 {@link #populate(Graph, int, int[])} 把它装进任意一种 {@link Graph}.
+ * <ul>
+ *  <li><b>R-MAT</b> : 递归矩阵模型, 度数呈幂律分布, 接近社交网络/网页图</li>
+ *  <li><b>Erdős–Rényi</b> : 均匀随机选边, 度数集中</li>
+ *  <li><b>网格</b> : 每个顶点连向右边和下边的邻居, 直径大</li>
+ *  <li><b>长链</b> : 0 -&gt 1 -&gt ... -&gt n-1, 递归深度最坏的情况</li>
+ * </ul>
+ */
+public final class GraphGenerator {
+
+	private GraphGenerator() {
+	}
+
+	/**
+	 * R-MAT 图, 顶点数 <code>2^scale</code>, 边数 <code>edgeFactor * 2^scale</code> (含重复边和自环, 由图自己去掉),
+	 * 象限概率取 Graph500 的 (0.57, 0.19, 0.19, 0.05)
+	 */
+	public static int[] rmat(int scale, int edgeFactor, long seed) {
+		Random random = new Random(seed);
+		int edgeCount = edgeFactor << scale;
+		int[] edges = new int[edgeCount * 2];
+		for(int e = 0; e < edgeCount; e++) {
+			int start = 0;
+			int end = 0;
+			for(int bit = scale - 1; bit >= 0; bit--) {
+				double p = random.nextDouble();
+				if(p < 0.57)
+					continue;
+				if(p < 0.76)
+					end |= 1 << bit;
+				else if(p < 0.95)
+					start |= 1 << bit;
+				else {
+					start |= 1 << bit;
+					end |= 1 << bit;
+				}
+			}
+			edges[2 * e] = start;
+			edges[2 * e + 1] = end;
+		}
+		return edges;
+	}
+
+	/** G(n, m): 在 <code>vertexCount</code> 个顶点上均匀随机取 <code>edgeCount</code> 条边 */
+	public static int[] erdosRenyi(int vertexCount, int edgeCount, long seed) {
+		Random random = new Random(seed);
+		int[] edges = new int[edgeCount * 2];
+		for(int e = 0; e < edgeCount; e++) {
+			edges[2 * e] = random.nextInt(vertexCount);
+			edges[2 * e + 1] = random.nextInt(vertexCount);
+		}
+		return edges;
+	}
+
+	/** <code>rows x columns</code> 的网格, 顶点 <code>r * columns + c</code> 连向右边和下边的顶点 */
+	public static int[] grid(int rows, int columns) {
+		int[] edges = new int[((rows - 1) * columns + rows * (columns - 1)) * 2];
+		int e = 0;
+		for(int r = 0; r < rows; r++) {
+			for(int c = 0; c < columns; c++) {
+				int v = r * columns + c;
+				if(c + 1 < columns) {
+					edges[e++] = v;
+					edges[e++] = v + 1;
+				}
+				if(r + 1 < rows) {
+					edges[e++] = v;
+					edges[e++] = v + columns;
+				}
+			}
+		}
+		return edges;
+	}
+
+	/** 长链 0 -&gt 1 -&gt ... -&gt vertexCount - 1 */
+	public static int[] chain(int vertexCount) {
+		int[] edges = new int[(vertexCount - 1) * 2];
+		for(int v = 0; v + 1 < vertexCount; v++) {
+			edges[2 * v] = v;
+			edges[2 * v + 1] = v + 1;
+		}
+		return edges;
+	}
+
+	/** 用 <code>addVertex</code> / <code>addEdge</code> 把顶点 <code>0 .. vertexCount - 1</code> 和边装入 <code>graph</code>, 顶点的关键字等于 id */
+	public static <G extends Graph<Integer, Integer>> G populate(G graph, int vertexCount, int[] edges) {
+		for(int v = 0; v < vertexCount; v++)
+			graph.addVertex(new Graph.Vertex<Integer>(v, v));
+		for(int e = 0; e < edges.length; e += 2)
+			graph.addEdge(new Graph.Edge<Integer>(edges[e], edges[e + 1], 1));
+		return graph;
+	}
+
+	/* 和 populate 相同, 但先用随机排列替换顶点 id, 模拟上游没有规律的编号; CompactGraph 和 CompressedGraph 的基准用 */
+	static <G extends Graph<Integer, Integer>> G shuffled(G graph, int vertexCount, int[] edges) {
+		int[] label = new int[vertexCount];
+		for(int v = 0; v < vertexCount; v++)
+			label[v] = v;
+		Random random = new Random(vertexCount);
+		for(int v = vertexCount - 1; v > 0; v--) {
+			int w = random.nextInt(v + 1);
+			int swap = label[v];
+			label[v] = label[w];
+			label[w] = swap;
+		}
+		int[] relabeled = new int[edges.length];
+		for(int e = 0; e < edges.length; e++)
+			relabeled[e] = label[edges[e]];
+		return populate(graph, vertexCount, relabeled);
+	}
+}
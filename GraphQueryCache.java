@@ -0,0 +1,254 @@
+package utility;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 路径和强连通查询的结果缓存<br/><br/>
+ *
+ * 以 (查询类型, 起点) 为键缓存一次遍历的结果, 结果存成排好序的顶点 id 数组加上对齐的 int 数组 (BFS 的前驱下标, 强连通分量的编号),
+ * 而不是保存 <code>HashMap</code> 实现的遍历对象. 每个结果记录计算时的 {@link Graph#version()}, 图修改后再取到它就当作未命中, 重新计算.<br/>
+ * 按最近最少使用淘汰, 同时限制条目数和总权重 (所有结果数组的长度之和). 所有方法都是线程安全的, 遍历在锁外进行.
+ *
+ * @param <T1>
+ * @param <T2>
+ */
+public class GraphQueryCache<T1 extends Comparable<T1>, T2 extends Number> {
+	private static final int BREADTH_FIRST = 0;
+	private static final int STRONG_COMPONENTS = 1;
+
+	private final Graph<T1, T2> graph;
+	private final int maxEntries;
+	private final long maxWeight;
+	/* 访问顺序的 LinkedHashMap, 表头是最久未用的条目 */
+	private final LinkedHashMap<Key, Result> entries = new LinkedHashMap<Key, Result>(16, 0.75f, true);
+	private long weight;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	public GraphQueryCache(Graph<T1, T2> graph, int maxEntries, long maxWeight) {
+		if(maxEntries <= 0 || maxWeight <= 0)
+			throw new IllegalArgumentException("maxEntries and maxWeight must be positive");
+		this.graph = graph;
+		this.maxEntries = maxEntries;
+		this.maxWeight = maxWeight;
+	}
+
+	/**
+	 * 和 <code>new BreadthFirstPaths(graph, source).pathTo(destination)</code> 相同, 起点的遍历结果会被缓存
+	 */
+	public List<Integer> pathTo(int source, int destination) {
+		Result result = get(new Key(BREADTH_FIRST, source));
+		int index = result.indexOf(destination);
+		List<Integer> path = new LinkedList<Integer>();
+		if(index < 0)
+			return path;
+		for(; index >= 0; index = result.values[index])
+			path.add(0, result.ids[index]);
+		return path;
+	}
+
+	public boolean hasPathTo(int source, int destination) {
+		return get(new Key(BREADTH_FIRST, source)).indexOf(destination) >= 0;
+	}
+
+	/**
+	 * 和 <code>new Kosaraju(graph).stronglyConnected(vertexId1, vertexId2)</code> 相同, 整张图的分量编号只算一次
+	 */
+	public boolean stronglyConnected(int vertexId1, int vertexId2) {
+		Result result = get(new Key(STRONG_COMPONENTS, 0));
+		int index1 = result.indexOf(vertexId1);
+		int index2 = result.indexOf(vertexId2);
+		return index1 >= 0 && index2 >= 0 && result.values[index1] == result.values[index2];
+	}
+
+	/** 顶点所在强连通分量的编号, 顶点不存在时为 -1 */
+	public int component(int vertexId) {
+		Result result = get(new Key(STRONG_COMPONENTS, 0));
+		int index = result.indexOf(vertexId);
+		return index < 0 ? -1 : result.values[index];
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		weight = 0;
+	}
+
+	public synchronized long hits() {
+		return hits;
+	}
+
+	public synchronized long misses() {
+		return misses;
+	}
+
+	public synchronized long evictions() {
+		return evictions;
+	}
+
+	public synchronized double hitRate() {
+		long total = hits + misses;
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/** 当前所有缓存结果的数组长度之和 */
+	public synchronized long weight() {
+		return weight;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("{entries=%d, weight=%d, hits=%d, misses=%d, evictions=%d, hitRate=%.3f}",
+				entries.size(), weight, hits, misses, evictions, hitRate());
+	}
+
+	private Result get(Key key) {
+		long version = graph.version();
+		synchronized(this) {
+			Result cached = entries.get(key);
+			if(cached != null && cached.version == version) {
+				hits++;
+				return cached;
+			}
+			misses++;
+			if(cached != null) {
+				entries.remove(key);
+				weight -= cached.weight();
+			}
+		}
+		/* 同一个键同时未命中时可能算两次, 换来遍历期间不持有锁 */
+		Result computed = key.kind == BREADTH_FIRST ? breadthFirst(key.source) : strongComponents();
+		computed.version = version;
+		synchronized(this) {
+			Result previous = entries.put(key, computed);
+			if(previous != null)
+				weight -= previous.weight();
+			weight += computed.weight();
+			evict();
+		}
+		return computed;
+	}
+
+	private void evict() {
+		Iterator<Result> iterator = entries.values().iterator();
+		while((entries.size() > maxEntries || weight > maxWeight) && iterator.hasNext()) {
+			Result eldest = iterator.next();
+			iterator.remove();
+			weight -= eldest.weight();
+			evictions++;
+		}
+	}
+
+	/* 和 BreadthFirstPaths 相同的遍历顺序, 所以得到相同的路径 */
+	private Result breadthFirst(int source) {
+		Map<Integer, Set<Graph.Arc<T2>>> adjacency = graph.unmodifiableAdjacency();
+		List<Integer> order = new ArrayList<Integer>();
+		List<Integer> parents = new ArrayList<Integer>();
+		Map<Integer, Integer> position = new HashMap<Integer, Integer>();
+		order.add(source);
+		parents.add(-1);
+		position.put(source, 0);
+		if(adjacency.containsKey(source)) {
+			for(int head = 0; head < order.size(); head++) {
+				Set<Graph.Arc<T2>> neighbours = adjacency.get(order.get(head));
+				if(neighbours == null)
+					continue;
+				for(Graph.Arc<T2> neighbour : neighbours) {
+					if(position.containsKey(neighbour.getId()))
+						continue;
+					position.put(neighbour.getId(), order.size());
+					order.add(neighbour.getId());
+					parents.add(head);
+				}
+			}
+		}
+		/* 按 id 排序, 前驱改成排序后的下标 */
+		int n = order.size();
+		Integer[] sorted = new Integer[n];
+		for(int i = 0; i < n; i++)
+			sorted[i] = i;
+		Arrays.sort(sorted, (a, b) -> Integer.compare(order.get(a), order.get(b)));
+		int[] rank = new int[n];
+		for(int i = 0; i < n; i++)
+			rank[sorted[i]] = i;
+		int[] ids = new int[n];
+		int[] parent = new int[n];
+		for(int i = 0; i < n; i++) {
+			ids[i] = order.get(sorted[i]);
+			int p = parents.get(sorted[i]);
+			parent[i] = p < 0 ? -1 : rank[p];
+		}
+		return new Result(ids, parent);
+	}
+
+	private Result strongComponents() {
+		if(!(graph instanceof DirectedGraph))
+			throw new UnsupportedOperationException("strongly connected components need a DirectedGraph");
+		DirectedGraph.Kosaraju kosaraju = new DirectedGraph.Kosaraju((DirectedGraph<T1, T2>) graph);
+		List<Integer> vertexIds = new ArrayList<Integer>(graph.unmodifiableVertexDictionary().keySet());
+		Collections.sort(vertexIds);
+		int[] ids = new int[vertexIds.size()];
+		int[] group = new int[ids.length];
+		for(int i = 0; i < ids.length; i++) {
+			ids[i] = vertexIds.get(i);
+			group[i] = kosaraju.group(ids[i]);
+		}
+		return new Result(ids, group);
+	}
+
+	private static class Key {
+		private final int kind;
+		private final int source;
+
+		private Key(int kind, int source) {
+			this.kind = kind;
+			this.source = source;
+		}
+		@Override
+		public int hashCode() {
+			return Objects.hash(kind, source);
+		}
+		@Override
+		public boolean equals(Object object) {
+			if(this == object)
+				return true;
+			if(!(object instanceof Key))
+				return false;
+			Key another = (Key) object;
+			return another.kind == kind && another.source == source;
+		}
+	}
+
+	/* ids 升序, values[i] 是 ids[i] 的附加值 */
+	private static class Result {
+		private final int[] ids;
+		private final int[] values;
+		private long version;
+
+		private Result(int[] ids, int[] values) {
+			this.ids = ids;
+			this.values = values;
+		}
+		private int indexOf(int vertexId) {
+			int index = Arrays.binarySearch(ids, vertexId);
+			return index < 0 ? -1 : index;
+		}
+		private long weight() {
+			return ids.length + values.length;
+		}
+	}
+}
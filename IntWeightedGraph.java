@@ -0,0 +1,80 @@
+package utility;
+
+import java.util.Arrays;
+
+/**
+ * 权重为 int 的 {@link CompactGraph}<br/><br/>
+ *
+ * 冻结时把每条弧的 <code>Number</code> 权重取一次 <code>intValue()</code>, 存进和弧对齐的 <code>int[]</code>,
+ * 之后的带权遍历只读基本类型数组, 不装箱也没有虚调用. 没有权重的弧按 1 处理. 距离用 long 累加, 不会溢出.
+ */
+public class IntWeightedGraph extends CompactGraph {
+
+	private final int[] weights;
+	private final boolean negative;
+
+	public <T1 extends Comparable<T1>, T2 extends Number> IntWeightedGraph(Graph<T1, T2> graph) {
+		this(graph, Ordering.BFS);
+	}
+
+	public <T1 extends Comparable<T1>, T2 extends Number> IntWeightedGraph(Graph<T1, T2> graph, Ordering ordering) {
+		super(graph, ordering);
+		int[] weights = new int[countOfArc()];
+		forEachArc(graph, (position, weight) -> weights[position] = weight == null ? 1 : weight.intValue());
+		boolean negative = false;
+		for(int weight : weights)
+			negative |= weight < 0;
+		this.weights = weights;
+		this.negative = negative;
+	}
+
+	/** 弧 <code>fromId -&gt toId</code> 的权重, 没有这条弧时抛出 <code>IllegalArgumentException</code> */
+	public int weight(int fromId, int toId) {
+		int position = arcPosition(require(fromId), require(toId));
+		if(position < 0)
+			throw new IllegalArgumentException("no arc " + fromId + " -> " + toId);
+		return weights[position];
+	}
+
+	/** 出弧的权重, 和 {@link #neighbours(int)} 对齐 */
+	public int[] weights(int vertexId) {
+		int v = require(vertexId);
+		return Arrays.copyOfRange(weights, offsets()[v], offsets()[v + 1]);
+	}
+
+	/**
+	 * Dijkstra 单源最短路径, 有负权重时抛出 <code>UnsupportedOperationException</code>
+	 */
+	public LongShortestPaths shortestPaths(int source) {
+		if(negative)
+			throw new UnsupportedOperationException("Dijkstra needs non-negative weights");
+		int s = require(source);
+		int[] offsets = offsets();
+		int[] targets = targets();
+		int n = countOfVertex();
+		long[] distance = new long[n];
+		int[] parent = new int[n];
+		Arrays.fill(distance, Long.MAX_VALUE);
+		Arrays.fill(parent, -2);
+		distance[s] = 0;
+		parent[s] = -1;
+		PrimitiveHeap.LongKeyed heap = new PrimitiveHeap.LongKeyed();
+		heap.push(0, s);
+		while(!heap.isEmpty()) {
+			long d = heap.peekKey();
+			int v = heap.pop();
+			if(d > distance[v])
+				continue;
+			for(int k = offsets[v], end = offsets[v + 1]; k < end; k++) {
+				int w = targets[k];
+				long candidate = d + weights[k];
+				if(candidate < distance[w]) {
+					distance[w] = candidate;
+					parent[w] = v;
+					heap.push(candidate, w);
+				}
+			}
+		}
+		return new LongShortestPaths(this, s, parent, distance);
+	}
+}
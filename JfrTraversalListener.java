@@ -0,0 +1,85 @@
+package utility;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 把每次遍历记录为一个 JFR 事件 <code>utility.Traversal</code> 的 {@link TraversalListener}<br/><br/>
+ *
+ * 事件的持续时间覆盖 <code>started</code> 到 <code>finished</code>, 嵌套的算法各自产生一个事件,
+ * 在 JDK Mission Control 的时间线上就是外层算法的各个阶段; 事件里的计数只含算法自身, 不含嵌套的算法.<br/>
+ * 没有在录制时 {@link Event#shouldCommit()} 为 false, 开销只剩计数.
+ */
+public class JfrTraversalListener implements TraversalListener {
+
+	private final ThreadLocal<Deque<TraversalEvent>> events = ThreadLocal.withInitial(ArrayDeque::new);
+
+	@Override
+	public void started(String algorithm) {
+		TraversalEvent event = new TraversalEvent();
+		event.algorithm = algorithm;
+		event.begin();
+		events.get().push(event);
+	}
+
+	@Override
+	public void visited(int vertexId) {
+		TraversalEvent event = events.get().peek();
+		if(event != null)
+			event.vertices++;
+	}
+
+	@Override
+	public void scanned(int fromId, int toId) {
+		TraversalEvent event = events.get().peek();
+		if(event != null)
+			event.edges++;
+	}
+
+	@Override
+	public void depth(int depth) {
+		TraversalEvent event = events.get().peek();
+		if(event != null && depth > event.maxDepth)
+			event.maxDepth = depth;
+	}
+
+	@Override
+	public void frontier(int size) {
+		TraversalEvent event = events.get().peek();
+		if(event != null && size > event.maxFrontier)
+			event.maxFrontier = size;
+	}
+
+	@Override
+	public void finished(String algorithm) {
+		TraversalEvent event = events.get().poll();
+		if(event == null)
+			return;
+		event.end();
+		if(event.shouldCommit())
+			event.commit();
+	}
+
+	@Name("utility.Traversal")
+	@Label("Graph Traversal")
+	@Category({"utility", "Graph"})
+	@Description("One run of a graph traversal algorithm")
+	static class TraversalEvent extends Event {
+		@Label("Algorithm")
+		String algorithm;
+		@Label("Vertices Visited")
+		long vertices;
+		@Label("Arcs Scanned")
+		long edges;
+		@Label("Max Recursion Depth")
+		int maxDepth;
+		@Label("Max Frontier")
+		int maxFrontier;
+	}
+}
@@ -0,0 +1,79 @@
+package utility;
+
+import java.util.Arrays;
+
+/**
+ * 权重为 long 的 {@link CompactGraph}<br/><br/>
+ *
+ * 和 {@link IntWeightedGraph} 相同, 只是权重存成 <code>long[]</code>. 距离之和超出 long 的范围时结果没有意义.
+ */
+public class LongWeightedGraph extends CompactGraph {
+
+	private final long[] weights;
+	private final boolean negative;
+
+	public <T1 extends Comparable<T1>, T2 extends Number> LongWeightedGraph(Graph<T1, T2> graph) {
+		this(graph, Ordering.BFS);
+	}
+
+	public <T1 extends Comparable<T1>, T2 extends Number> LongWeightedGraph(Graph<T1, T2> graph, Ordering ordering) {
+		super(graph, ordering);
+		long[] weights = new long[countOfArc()];
+		forEachArc(graph, (position, weight) -> weights[position] = weight == null ? 1 : weight.longValue());
+		boolean negative = false;
+		for(long weight : weights)
+			negative |= weight < 0;
+		this.weights = weights;
+		this.negative = negative;
+	}
+
+	/** 弧 <code>fromId -&gt toId</code> 的权重, 没有这条弧时抛出 <code>IllegalArgumentException</code> */
+	public long weight(int fromId, int toId) {
+		int position = arcPosition(require(fromId), require(toId));
+		if(position < 0)
+			throw new IllegalArgumentException("no arc " + fromId + " -> " + toId);
+		return weights[position];
+	}
+
+	/** 出弧的权重, 和 {@link #neighbours(int)} 对齐 */
+	public long[] weights(int vertexId) {
+		int v = require(vertexId);
+		return Arrays.copyOfRange(weights, offsets()[v], offsets()[v + 1]);
+	}
+
+	/**
+	 * Dijkstra 单源最短路径, 有负权重时抛出 <code>UnsupportedOperationException</code>
+	 */
+	public LongShortestPaths shortestPaths(int source) {
+		if(negative)
+			throw new UnsupportedOperationException("Dijkstra needs non-negative weights");
+		int s = require(source);
+		int[] offsets = offsets();
+		int[] targets = targets();
+		int n = countOfVertex();
+		long[] distance = new long[n];
+		int[] parent = new int[n];
+		Arrays.fill(distance, Long.MAX_VALUE);
+		Arrays.fill(parent, -2);
+		distance[s] = 0;
+		parent[s] = -1;
+		PrimitiveHeap.LongKeyed heap = new PrimitiveHeap.LongKeyed();
+		heap.push(0, s);
+		while(!heap.isEmpty()) {
+			long d = heap.peekKey();
+			int v = heap.pop();
+			if(d > distance[v])
+				continue;
+			for(int k = offsets[v], end = offsets[v + 1]; k < end; k++) {
+				int w = targets[k];
+				long candidate = d + weights[k];
+				if(candidate < distance[w]) {
+					distance[w] = candidate;
+					parent[w] = v;
+					heap.push(candidate, w);
+				}
+			}
+		}
+		return new LongShortestPaths(this, s, parent, distance);
+	}
+}
@@ -1,8 +1,6 @@
 package execrise;
 
 import java.util.ArrayList;
-import java.util.Deque;
-import java.util.LinkedList;
 import java.util.List;
 
 public class NFA {
@@ -15,63 +13,15 @@ public class NFA {
 		System.out.println(result);
 	}
 	
-	private char[] re;
+	private RegexProgram program;
 	private Digraph G;
 	private int M;
 	
 	public NFA(String regexp) {
-		Deque<Integer> ops = new LinkedList<Integer>();
-		re = regexp.toCharArray();
-		M = re.length;
+		program = new RegexProgram(regexp);
+		M = program.length();
 		G = new Digraph(M+1);
-		
-		for(int i = 0; i < M; i++) {
-			int lp = i;
-			if(re[i] == '(' || re[i] == '|') {
-				ops.push(i);
-			}else if(re[i] == ')') {
-//				int or = ops.pop();
-//				if(re[or] == '|') {
-//					lp = ops.pop();
-//					G.addEdge(lp, or + 1);
-//					G.addEdge(or, i);
-//				}
-//				else {
-//					lp = or;
-//				}
-				List<Integer> orLocs = new ArrayList<Integer>();
-				while(re[ops.peekFirst()] != '(') {
-					int or = ops.pop();
-					System.out.println("or = " + or);
-					if(re[or] == '|') {
-						System.out.println(String.format("G.addEdge(or=%d, i=%d)", or, i));
-						G.addEdge(or, i);
-						orLocs.add(or);
-					}else {
-						System.out.println(String.format("re[or]!='|', let lp = or, which or is %d", or));
-						lp = or;
-					}
-				}
-				int leftPar = ops.pop();
-				for(int orLoc : orLocs) {
-					System.out.println(String.format("G.addEdge(leftPar=%d, orLoc+1=%d)", leftPar, orLoc+1));
-					G.addEdge(leftPar, orLoc+1);
-				}
-			}
-			if(i < M - 1 && re[i + 1] == '*') {
-				G.addEdge(lp, i+1);
-				G.addEdge(i+1, lp);
-			}
-			if(i < M - 1 && re[i] == '.') {
-				G.addEdge(lp, i);
-			}
-			if(re[i] == '(' || re[i] == '*' || re[i] == ')')
-				G.addEdge(i, i + 1);
-		}
-		
-		for(int i = 0; i < G.V(); i++) {
-			System.out.println(String.format("G.adj(%d)=%s", i, G.adj(i)));
-		}
+		program.epsilonTransitions(G::addEdge);
 	}
 	
 	public boolean recognizes(String txt) {
@@ -83,9 +33,8 @@ public class NFA {
 		for(int i = 0; i < txt.length(); i++) {
 			List<Integer> match = new ArrayList<Integer>();
 			for(int v : pc) {
-				if (v < M)
-					if(re[v] == txt.charAt(i) || re[v] == '.')
-						match.add(v + 1);
+				if(matches(v, txt.charAt(i)))
+					match.add(v + 1);
 			}
 			pc = new ArrayList<Integer>();
 			dfs = new DirectedDFS(G, match);
@@ -98,6 +47,29 @@ public class NFA {
 				return true;
 		return false;
 	}
+	
+	boolean matches(int v, char c) {
+		return program.matches(v, c);
+	}
+	
+	int accept() {
+		return M;
+	}
+	
+	/* ε 转换图的邻接表, adjacency[v] 是 v 的 ε 后继 */
+	int[][] epsilonAdjacency() {
+		int[][] adjacency = new int[G.V()][];
+		List<Integer> successors = new ArrayList<Integer>();
+		for(int v = 0; v < G.V(); v++) {
+			successors.clear();
+			for(int w : G.adj(v))
+				successors.add(w);
+			adjacency[v] = new int[successors.size()];
+			for(int i = 0; i < adjacency[v].length; i++)
+				adjacency[v][i] = successors.get(i);
+		}
+		return adjacency;
+	}
 }
 
 class DirectedDFS {
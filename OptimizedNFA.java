@@ -0,0 +1,213 @@
+package execrise;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import utility.DirectedGraph;
+import utility.DirectedGraph.Accessibility;
+import utility.Graph.Edge;
+import utility.Graph.Vertex;
+
+/**
+ * 由 {@link EnhanceNFA} 的 epsilon 图在编译期优化得到的无 epsilon 自动机:
+ * <ol>
+ *  <li>预先计算每个状态的 epsilon 闭包, 括号, <code>|</code>, 量词这些只做 epsilon 跳转的状态全部折叠掉</li>
+ *  <li>用 {@link Accessibility} 去掉从起点不可达的状态, 以及到不了接受状态的状态</li>
+ *  <li>匹配字符相同且后继等价的状态反复合并, 直到划分稳定</li>
+ * </ol>
+ * 匹配时每个字符只查一次预先算好的后继数组, 不再做 DFS.
+ */
+public class OptimizedNFA {
+
+	public static void main(String[] args) {
+		String pattern = args.length > 0 ? args[0] : "((A*B|AC)D|(A*B|AC)D)";
+		String text = args.length > 1 ? args[1] : "AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAABD";
+		EnhanceNFA nfa = new EnhanceNFA(pattern);
+		OptimizedNFA optimized = nfa.optimize();
+		System.out.println(optimized.report());
+		System.out.println(String.format("recognizes: %s / %s", nfa.recognizes(text), optimized.recognizes(text)));
+		int rounds = 2000;
+		for(int i = 0; i < rounds; i++) {
+			nfa.recognizes(text);
+			optimized.recognizes(text);
+		}
+		long begin = System.nanoTime();
+		for(int i = 0; i < rounds; i++)
+			nfa.recognizes(text);
+		long enhanceNanos = System.nanoTime() - begin;
+		begin = System.nanoTime();
+		for(int i = 0; i < rounds; i++)
+			optimized.recognizes(text);
+		long optimizedNanos = System.nanoTime() - begin;
+		System.out.println(String.format("EnhanceNFA: %.1f us/match, OptimizedNFA: %.1f us/match",
+				enhanceNanos / 1e3 / rounds, optimizedNanos / 1e3 / rounds));
+	}
+
+	private final RegexProgram program;
+	private final int statesBefore;
+	private final int arcsBefore;
+	/* 优化后的状态 -> 代表它的原状态, 用于判断匹配哪些字符 */
+	private final int[] representative;
+	private final int[][] next;
+	private final int[] start;
+	/* 接受状态的编号, 语言为空时为 -1 */
+	private final int accept;
+
+	OptimizedNFA(RegexProgram program, DirectedGraph<Character, Integer> epsilon) {
+		this.program = program;
+		this.statesBefore = epsilon.countOfVertex();
+		this.arcsBefore = epsilon.countOfArc();
+		int acceptState = program.length();
+
+		/* 1. 只保留消耗字符的状态和接受状态, 转移为 v -> closure(v + 1) 中保留的状态 */
+		Map<Integer, List<Integer>> closures = new HashMap<Integer, List<Integer>>();
+		List<Integer> startStates = closure(program, epsilon, 0, closures);
+		Map<Integer, List<Integer>> transitions = new HashMap<Integer, List<Integer>>();
+		for(int v = 0; v < acceptState; v++)
+			if(program.consumes(v))
+				transitions.put(v, closure(program, epsilon, v + 1, closures));
+		transitions.put(acceptState, Collections.<Integer>emptyList());
+
+		/* 2. 去掉不可达的状态和死状态 */
+		DirectedGraph<Character, Integer> collapsed = new DirectedGraph<Character, Integer>();
+		for(int v : transitions.keySet())
+			collapsed.addVertex(new Vertex<Character>(v, null));
+		for(Map.Entry<Integer, List<Integer>> entry : transitions.entrySet())
+			for(int w : entry.getValue())
+				collapsed.addEdge(new Edge<Integer>(entry.getKey(), w));
+		Map<Integer, Boolean> reachable = new Accessibility(collapsed, new TreeSet<Integer>(startStates)).result();
+		Map<Integer, Boolean> productive = new Accessibility(collapsed.reverse(), Collections.singleton(acceptState)).result();
+		List<Integer> live = new ArrayList<Integer>();
+		for(int v : transitions.keySet())
+			if(reachable.getOrDefault(v, false) && productive.getOrDefault(v, false))
+				live.add(v);
+
+		/* 3. 合并等价状态: 先按匹配的字符集合分组, 再按后继所在的组不断细分 */
+		Map<Integer, Integer> group = new HashMap<Integer, Integer>();
+		Map<Object, Integer> keys = new HashMap<Object, Integer>();
+		for(int v : live) {
+			Object key = program.matchKey(v);
+			if(!keys.containsKey(key))
+				keys.put(key, keys.size());
+			group.put(v, keys.get(key));
+		}
+		int groupCount = keys.size();
+		while(true) {
+			Map<List<Integer>, Integer> signatures = new HashMap<List<Integer>, Integer>();
+			Map<Integer, Integer> refined = new HashMap<Integer, Integer>();
+			for(int v : live) {
+				List<Integer> signature = new ArrayList<Integer>();
+				signature.add(group.get(v));
+				signature.addAll(successorGroups(transitions.get(v), group));
+				if(!signatures.containsKey(signature))
+					signatures.put(signature, signatures.size());
+				refined.put(v, signatures.get(signature));
+			}
+			group = refined;
+			if(signatures.size() == groupCount)
+				break;
+			groupCount = signatures.size();
+		}
+
+		this.representative = new int[groupCount];
+		this.next = new int[groupCount][];
+		for(int v : live) {
+			int g = group.get(v);
+			if(next[g] != null)
+				continue;
+			representative[g] = v;
+			next[g] = toArray(successorGroups(transitions.get(v), group));
+		}
+		this.start = toArray(successorGroups(startStates, group));
+		this.accept = group.containsKey(acceptState) ? group.get(acceptState) : -1;
+	}
+
+	public boolean recognizes(String txt) {
+		if(accept < 0)
+			return false;
+		int[] current = new int[representative.length];
+		int[] following = new int[representative.length];
+		boolean[] marked = new boolean[representative.length];
+		System.arraycopy(start, 0, current, 0, start.length);
+		int currentSize = start.length;
+		for(int i = 0; i < txt.length() && currentSize > 0; i++) {
+			char c = txt.charAt(i);
+			int followingSize = 0;
+			for(int k = 0; k < currentSize; k++) {
+				int s = current[k];
+				if(!program.matches(representative[s], c))
+					continue;
+				for(int t : next[s]) {
+					if(!marked[t]) {
+						marked[t] = true;
+						following[followingSize++] = t;
+					}
+				}
+			}
+			for(int k = 0; k < followingSize; k++)
+				marked[following[k]] = false;
+			int[] swap = current;
+			current = following;
+			following = swap;
+			currentSize = followingSize;
+		}
+		for(int k = 0; k < currentSize; k++)
+			if(current[k] == accept)
+				return true;
+		return false;
+	}
+
+	public int statesBefore() {
+		return statesBefore;
+	}
+
+	public int statesAfter() {
+		return representative.length;
+	}
+
+	public int transitions() {
+		int count = 0;
+		for(int[] successors : next)
+			count += successors.length;
+		return count;
+	}
+
+	public String report() {
+		return String.format("states: %d -> %d, epsilon arcs: %d -> 0, transitions: %d",
+				statesBefore, statesAfter(), arcsBefore, transitions());
+	}
+
+	private static List<Integer> closure(RegexProgram program, DirectedGraph<Character, Integer> epsilon,
+			int source, Map<Integer, List<Integer>> closures) {
+		if(closures.containsKey(source))
+			return closures.get(source);
+		Map<Integer, Boolean> marked = new Accessibility(epsilon, Collections.singleton(source)).result();
+		List<Integer> kept = new ArrayList<Integer>();
+		for(Map.Entry<Integer, Boolean> entry : marked.entrySet())
+			if(entry.getValue() && (program.consumes(entry.getKey()) || entry.getKey() == program.length()))
+				kept.add(entry.getKey());
+		closures.put(source, kept);
+		return kept;
+	}
+
+	private static Set<Integer> successorGroups(List<Integer> states, Map<Integer, Integer> group) {
+		Set<Integer> groups = new TreeSet<Integer>();
+		for(int w : states)
+			if(group.containsKey(w))
+				groups.add(group.get(w));
+		return groups;
+	}
+
+	private static int[] toArray(Set<Integer> values) {
+		int[] result = new int[values.size()];
+		int i = 0;
+		for(int value : values)
+			result[i++] = value;
+		return result;
+	}
+}
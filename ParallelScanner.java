@@ -0,0 +1,223 @@
+package execrise;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 多核并行扫描大文件: 文件按行边界切成若干块, 每块在线程池上用独立的 {@link StreamingMatcher} 匹配,
+ * 结果按块的顺序回放给调用方, 行号和字节偏移都是相对整个文件的.
+ * 匹配以行为单位, 每一行开头 NFA 状态都会重置, 因此切在换行处的块之间没有需要传递的状态.
+ */
+public class ParallelScanner {
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if(args.length < 2) {
+			System.out.println("usage: ParallelScanner <regexp> <file>");
+			return;
+		}
+		NFA nfa = new NFA(args[0]);
+		Path path = Paths.get(args[1]);
+		StreamingMatcher.MatchListener ignore = (line, start, end) -> {};
+
+		long begin = System.nanoTime();
+		StreamingMatcher sequential = new StreamingMatcher(nfa, ignore);
+		StreamingMatcher.scan(path, sequential);
+		long sequentialNanos = System.nanoTime() - begin;
+
+		begin = System.nanoTime();
+		long matches = new ParallelScanner(nfa).scan(path, ignore);
+		long parallelNanos = System.nanoTime() - begin;
+
+		double megabytes = sequential.position() / (1024.0 * 1024.0);
+		System.out.println(String.format("matches=%d/%d, sequential=%.1f MB/s, parallel=%.1f MB/s (%d threads)",
+				sequential.matches(), matches,
+				megabytes / (sequentialNanos / 1e9), megabytes / (parallelNanos / 1e9),
+				ForkJoinPool.commonPool().getParallelism()));
+	}
+
+	private static final long DEFAULT_CHUNK = 1L << 26;
+	private static final int PROBE = 1 << 16;
+
+	private final NFA nfa;
+	private final ExecutorService executor;
+	private final long chunkSize;
+	private final int maxInFlight;
+
+	public ParallelScanner(NFA nfa) {
+		this(nfa, ForkJoinPool.commonPool(), DEFAULT_CHUNK);
+	}
+
+	public ParallelScanner(NFA nfa, ExecutorService executor, long chunkSize) {
+		if(chunkSize <= 0 || chunkSize > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("chunkSize must be in (0, Integer.MAX_VALUE]");
+		this.nfa = nfa;
+		this.executor = executor;
+		this.chunkSize = chunkSize;
+		this.maxInFlight = 2 * Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * 最多同时提交 {@link #maxInFlight} 个块, 消费掉最早的一块才切下一块, 内存不随文件大小增长.
+	 * 回放出错或被中断时, 尚未开始的块被取消, 已经开始的块等它结束后才关闭文件.
+	 * @return 匹配的行数
+	 */
+	public long scan(Path path, StreamingMatcher.MatchListener listener) throws IOException, InterruptedException {
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+			long size = channel.size();
+			ArrayDeque<ChunkTask> inFlight = new ArrayDeque<ChunkTask>();
+			try {
+				long from = 0;
+				long line = 0;
+				long matches = 0;
+				while(from < size || !inFlight.isEmpty()) {
+					while(from < size && inFlight.size() < maxInFlight) {
+						long to = alignToLine(channel, Math.min(from + chunkSize, size), size);
+						ChunkTask task = new ChunkTask(channel, from, to);
+						task.future = executor.submit(task);
+						inFlight.add(task);
+						from = to;
+					}
+					Chunk chunk = await(inFlight.peek().future);
+					inFlight.poll();
+					for(int i = 0; i < chunk.size; i++)
+						listener.matched(line + chunk.lines[i], chunk.starts[i], chunk.ends[i]);
+					line += chunk.lineCount;
+					matches += chunk.size;
+				}
+				return matches;
+			} finally {
+				abandon(inFlight);
+			}
+		}
+	}
+
+	/**
+	 * 取消还没开始的块, 等待已经开始的块结束, 保证返回之后没有任务再读 channel
+	 */
+	private static void abandon(ArrayDeque<ChunkTask> inFlight) {
+		boolean interrupted = false;
+		for(ChunkTask task : inFlight) {
+			if(task.claim()) {
+				task.future.cancel(false);
+				continue;
+			}
+			while(true) {
+				try {
+					task.future.get();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException | CancellationException e) {
+					break;
+				}
+			}
+		}
+		inFlight.clear();
+		if(interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	private Chunk scanChunk(FileChannel channel, long from, long to) throws IOException {
+		Chunk chunk = new Chunk(from);
+		StreamingMatcher matcher = new StreamingMatcher(nfa, chunk);
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+		matcher.feed(buffer);
+		matcher.finish();
+		chunk.lineCount = matcher.lines();
+		return chunk;
+	}
+
+	/**
+	 * 从 offset 开始向后找到第一个换行, 返回换行之后的位置; 找不到则返回文件末尾
+	 */
+	private static long alignToLine(FileChannel channel, long offset, long size) throws IOException {
+		while(offset < size) {
+			long length = Math.min(PROBE, size - offset);
+			MappedByteBuffer probe = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+			for(int i = 0; i < length; i++)
+				if(probe.get(i) == '\n')
+					return offset + i + 1;
+			offset += length;
+		}
+		return size;
+	}
+
+	private static Chunk await(Future<Chunk> future) throws IOException, InterruptedException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof IOException)
+				throw (IOException) cause;
+			if(cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	/* 一个已提交的块; 任务和 abandon 谁先 claim 成功谁说了算, 任务输掉就不碰 channel */
+	private class ChunkTask implements Callable<Chunk> {
+		private final FileChannel channel;
+		private final long from;
+		private final long to;
+		private final AtomicBoolean claimed = new AtomicBoolean();
+		private Future<Chunk> future;
+
+		private ChunkTask(FileChannel channel, long from, long to) {
+			this.channel = channel;
+			this.from = from;
+			this.to = to;
+		}
+
+		private boolean claim() {
+			return claimed.compareAndSet(false, true);
+		}
+
+		@Override
+		public Chunk call() throws IOException {
+			if(!claim())
+				throw new CancellationException();
+			return scanChunk(channel, from, to);
+		}
+	}
+
+	/* 单个块的匹配结果, 偏移量已经换算成文件内的绝对位置, 行号仍是块内的相对行号 */
+	private static class Chunk implements StreamingMatcher.MatchListener {
+		private final long base;
+		private long[] lines = new long[16];
+		private long[] starts = new long[16];
+		private long[] ends = new long[16];
+		private int size;
+		private long lineCount;
+
+		private Chunk(long base) {
+			this.base = base;
+		}
+
+		@Override
+		public void matched(long line, long start, long end) {
+			if(size == lines.length) {
+				lines = Arrays.copyOf(lines, size * 2);
+				starts = Arrays.copyOf(starts, size * 2);
+				ends = Arrays.copyOf(ends, size * 2);
+			}
+			lines[size] = line;
+			starts[size] = base + start;
+			ends[size] = base + end;
+			size++;
+		}
+	}
+}
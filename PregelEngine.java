@@ -0,0 +1,478 @@
+package utility;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * 单机的以顶点为中心 (Pregel 式) 的 BSP 计算引擎<br/><br/>
+ *
+ * <ul>
+ *  <li>图在构造时冻结为按 id 排序的紧凑数组 (出弧的终点和权重), 之后的计算不再访问 <code>HashMap</code></li>
+ *  <li>顶点由 {@link Partitioner} 分给各个 worker 线程, 每个超步里每个 worker 对自己的活跃顶点调用
+ *      {@link VertexProgram#compute(Context, Messages)}</li>
+ *  <li>消息是 double, 按目标分区缓存在基本类型数组里; 给了合并函数时, 同一顶点收到的消息在投递时合并成一条</li>
+ *  <li>超步之间是屏障: 所有 worker 算完再统一投递, 投递完再开始下一步</li>
+ *  <li>顶点可以 {@link Context#voteToHalt()}, 收到消息时重新激活; 所有顶点都停机且没有消息时结束</li>
+ * </ul>
+ * 每个顶点只读写自己的值, 所以计算阶段不需要锁. 分区接口只依赖顶点 id, 以后换成跨进程的实现时计算部分不用改.
+ */
+public class PregelEngine {
+
+	/**
+	 * 用户的顶点程序
+	 */
+	public interface VertexProgram {
+		/** 顶点的初始值 */
+		default double initialValue(int vertexId) {
+			return 0;
+		}
+
+		/** 一个超步里对一个活跃顶点的计算, <code>messages</code> 是上一步发给它的消息 */
+		void compute(Context vertex, Messages messages);
+	}
+
+	/**
+	 * 顶点到分区的映射, 同一个 id 必须总是映射到同一个分区
+	 */
+	public interface Partitioner {
+		int partition(int vertexId, int partitions);
+	}
+
+	/** 按 id 取模分区 */
+	public static final Partitioner HASH = (vertexId, partitions) -> Math.floorMod(vertexId, partitions);
+
+	private final int[] ids;
+	/* 出弧的压缩行存储: 顶点 i 的出弧是 targets[offsets[i] .. offsets[i + 1]) */
+	private final int[] offsets;
+	private final int[] targets;
+	private final double[] weights;
+	private final int workers;
+	private final int[] partitionOf;
+	private final int[][] owned;
+	/* 顶点在其所属分区 owned[partitionOf[i]] 里的下标, 每个顶点只属于一个分区, 所有 worker 共用 */
+	private final int[] localIndex;
+
+	public <T1 extends Comparable<T1>, T2 extends Number> PregelEngine(Graph<T1, T2> graph) {
+		this(graph, Runtime.getRuntime().availableProcessors(), HASH);
+	}
+
+	public <T1 extends Comparable<T1>, T2 extends Number> PregelEngine(Graph<T1, T2> graph, int workers, Partitioner partitioner) {
+		if(workers <= 0)
+			throw new IllegalArgumentException("workers must be positive, got " + workers);
+		this.workers = workers;
+		Set<Integer> vertexIds = graph.unmodifiableVertexDictionary().keySet();
+		this.ids = new int[vertexIds.size()];
+		int n = 0;
+		for(int id : vertexIds)
+			ids[n++] = id;
+		Arrays.sort(ids);
+
+		Map<Integer, Set<Graph.Arc<T2>>> adjacency = graph.unmodifiableAdjacency();
+		this.offsets = new int[n + 1];
+		for(int i = 0; i < n; i++) {
+			Set<Graph.Arc<T2>> arcs = adjacency.get(ids[i]);
+			offsets[i + 1] = offsets[i] + (arcs == null ? 0 : arcs.size());
+		}
+		this.targets = new int[offsets[n]];
+		this.weights = new double[offsets[n]];
+		for(int i = 0; i < n; i++) {
+			Set<Graph.Arc<T2>> arcs = adjacency.get(ids[i]);
+			if(arcs == null)
+				continue;
+			int k = offsets[i];
+			for(Graph.Arc<T2> arc : arcs) {
+				targets[k] = Arrays.binarySearch(ids, arc.getId());
+				weights[k++] = arc.getWeight() == null ? 1 : arc.getWeight().doubleValue();
+			}
+		}
+
+		this.partitionOf = new int[n];
+		int[] sizes = new int[workers];
+		for(int i = 0; i < n; i++) {
+			int p = partitioner.partition(ids[i], workers);
+			if(p < 0 || p >= workers)
+				throw new IllegalArgumentException("partitioner returned " + p + " for " + workers + " partitions");
+			partitionOf[i] = p;
+			sizes[p]++;
+		}
+		this.owned = new int[workers][];
+		for(int p = 0; p < workers; p++)
+			owned[p] = new int[sizes[p]];
+		Arrays.fill(sizes, 0);
+		this.localIndex = new int[n];
+		for(int i = 0; i < n; i++) {
+			localIndex[i] = sizes[partitionOf[i]]++;
+			owned[partitionOf[i]][localIndex[i]] = i;
+		}
+	}
+
+	public Result run(VertexProgram program, int maxSupersteps) {
+		return run(program, null, maxSupersteps);
+	}
+
+	/**
+	 * 运行到所有顶点停机且没有消息, 或者达到 <code>maxSupersteps</code>
+	 * @param combiner 合并发往同一顶点的消息, 必须满足交换律和结合律; 为 null 时逐条投递
+	 */
+	public Result run(VertexProgram program, DoubleBinaryOperator combiner, int maxSupersteps) {
+		int n = ids.length;
+		double[] values = new double[n];
+		for(int i = 0; i < n; i++)
+			values[i] = program.initialValue(ids[i]);
+		boolean[] halted = new boolean[n];
+		Worker[] team = new Worker[workers];
+		for(int p = 0; p < workers; p++)
+			team[p] = new Worker(p, program, combiner, values, halted);
+
+		ExecutorService executor = workers == 1 ? null : Executors.newFixedThreadPool(workers);
+		long totalMessages = 0;
+		int superstep = 0;
+		try {
+			while(superstep < maxSupersteps) {
+				int step = superstep;
+				List<Callable<Long>> computing = new ArrayList<Callable<Long>>();
+				for(Worker worker : team)
+					computing.add(() -> worker.compute(step));
+				long active = sum(executor, computing);
+
+				List<Callable<Long>> delivering = new ArrayList<Callable<Long>>();
+				for(Worker worker : team)
+					delivering.add(() -> worker.deliver(team));
+				long delivered = sum(executor, delivering);
+				totalMessages += delivered;
+				superstep++;
+				if(active == 0 && delivered == 0)
+					break;
+			}
+		} finally {
+			if(executor != null)
+				executor.shutdownNow();
+		}
+		return new Result(ids, values, superstep, totalMessages);
+	}
+
+	/* invokeAll 返回即为屏障 */
+	private static long sum(ExecutorService executor, List<Callable<Long>> tasks) {
+		long total = 0;
+		try {
+			if(executor == null) {
+				for(Callable<Long> task : tasks)
+					total += task.call();
+				return total;
+			}
+			for(Future<Long> future : executor.invokeAll(tasks))
+				total += future.get();
+			return total;
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted between supersteps", e);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/* 一个分区: 计算阶段只写自己顶点的值和自己的发件箱, 投递阶段只读各 worker 发往自己的发件箱 */
+	private class Worker {
+		private final int partition;
+		private final VertexProgram program;
+		private final DoubleBinaryOperator combiner;
+		private final double[] values;
+		private final boolean[] halted;
+		private final MessageBuffer[] outboxes;
+		/* 本分区顶点的收件箱, 第 k 个顶点的消息是 inboxValues[inboxStart[k] .. inboxStart[k + 1]) */
+		private final int[] inboxStart;
+		private double[] inboxValues = new double[0];
+		private final Context context = new Context();
+		private final Messages messages = new Messages();
+
+		private Worker(int partition, VertexProgram program, DoubleBinaryOperator combiner, double[] values, boolean[] halted) {
+			this.partition = partition;
+			this.program = program;
+			this.combiner = combiner;
+			this.values = values;
+			this.halted = halted;
+			this.outboxes = new MessageBuffer[workers];
+			for(int p = 0; p < workers; p++)
+				outboxes[p] = new MessageBuffer();
+			this.inboxStart = new int[owned[partition].length + 1];
+			context.worker = this;
+			messages.worker = this;
+		}
+
+		/* 返回计算后仍未停机的顶点数 */
+		private long compute(int superstep) {
+			int[] mine = owned[partition];
+			context.superstep = superstep;
+			long active = 0;
+			for(int k = 0; k < mine.length; k++) {
+				int v = mine[k];
+				boolean hasMessages = inboxStart[k + 1] > inboxStart[k];
+				if(halted[v] && !hasMessages)
+					continue;
+				halted[v] = false;
+				context.vertex = v;
+				messages.from = inboxStart[k];
+				messages.to = inboxStart[k + 1];
+				program.compute(context, messages);
+				if(!halted[v])
+					active++;
+			}
+			return active;
+		}
+
+		/* 收取所有 worker 发往本分区的消息, 返回条数 */
+		private long deliver(Worker[] team) {
+			int[] mine = owned[partition];
+			int[] counts = new int[mine.length + 1];
+			double[] combined = combiner == null ? null : new double[mine.length];
+			long received = 0;
+			for(Worker sender : team) {
+				MessageBuffer buffer = sender.outboxes[partition];
+				received += buffer.size;
+				for(int m = 0; m < buffer.size; m++) {
+					int k = localIndex[buffer.targets[m]];
+					if(combined == null)
+						counts[k + 1]++;
+					else if(counts[k + 1] == 0) {
+						counts[k + 1] = 1;
+						combined[k] = buffer.values[m];
+					} else
+						combined[k] = combiner.applyAsDouble(combined[k], buffer.values[m]);
+				}
+			}
+			for(int k = 0; k < mine.length; k++)
+				counts[k + 1] += counts[k];
+			System.arraycopy(counts, 0, inboxStart, 0, counts.length);
+			int total = counts[mine.length];
+			if(inboxValues.length < total)
+				inboxValues = new double[Math.max(total, inboxValues.length * 2)];
+			if(combined != null) {
+				for(int k = 0; k < mine.length; k++)
+					if(counts[k + 1] > counts[k])
+						inboxValues[counts[k]] = combined[k];
+			} else {
+				int[] cursor = Arrays.copyOf(counts, mine.length);
+				for(Worker sender : team) {
+					MessageBuffer buffer = sender.outboxes[partition];
+					for(int m = 0; m < buffer.size; m++)
+						inboxValues[cursor[localIndex[buffer.targets[m]]]++] = buffer.values[m];
+				}
+			}
+			for(Worker sender : team)
+				sender.outboxes[partition].size = 0;
+			return received;
+		}
+
+		private void send(int target, double message) {
+			outboxes[partitionOf[target]].add(target, message);
+		}
+	}
+
+	/**
+	 * <code>compute</code> 里当前顶点的视图; 只在那次调用内有效
+	 */
+	public final class Context {
+		private Worker worker;
+		private int vertex;
+		private int superstep;
+
+		private Context() {
+		}
+
+		public int vertexId() {
+			return ids[vertex];
+		}
+
+		public int superstep() {
+			return superstep;
+		}
+
+		public int vertexCount() {
+			return ids.length;
+		}
+
+		public double value() {
+			return worker.values[vertex];
+		}
+
+		public void setValue(double value) {
+			worker.values[vertex] = value;
+		}
+
+		public int outDegree() {
+			return offsets[vertex + 1] - offsets[vertex];
+		}
+
+		/** 第 <code>i</code> 条出弧的终点 id */
+		public int target(int i) {
+			return ids[targets[offsets[vertex] + i]];
+		}
+
+		/** 第 <code>i</code> 条出弧的权重, 没有权重的弧为 1 */
+		public double weight(int i) {
+			return weights[offsets[vertex] + i];
+		}
+
+		/** 沿第 <code>i</code> 条出弧发送消息 */
+		public void sendAlong(int i, double message) {
+			worker.send(targets[offsets[vertex] + i], message);
+		}
+
+		public void sendToNeighbours(double message) {
+			for(int k = offsets[vertex]; k < offsets[vertex + 1]; k++)
+				worker.send(targets[k], message);
+		}
+
+		/** 给任意顶点发消息, 目标不存在时抛出 <code>IllegalArgumentException</code> */
+		public void sendTo(int vertexId, double message) {
+			int target = Arrays.binarySearch(ids, vertexId);
+			if(target < 0)
+				throw new IllegalArgumentException("no vertex " + vertexId);
+			worker.send(target, message);
+		}
+
+		public void voteToHalt() {
+			worker.halted[vertex] = true;
+		}
+	}
+
+	/**
+	 * 当前顶点收到的消息, 不装箱
+	 */
+	public final class Messages {
+		private Worker worker;
+		private int from;
+		private int to;
+
+		private Messages() {
+		}
+
+		public int size() {
+			return to - from;
+		}
+
+		public boolean isEmpty() {
+			return to == from;
+		}
+
+		public double get(int i) {
+			if(i < 0 || i >= to - from)
+				throw new IndexOutOfBoundsException("message " + i + " of " + (to - from));
+			return worker.inboxValues[from + i];
+		}
+	}
+
+	/* 发往一个分区的消息: 目标顶点的下标和消息值 */
+	private static class MessageBuffer {
+		private int[] targets = new int[16];
+		private double[] values = new double[16];
+		private int size;
+
+		private void add(int target, double value) {
+			if(size == targets.length) {
+				targets = Arrays.copyOf(targets, size * 2);
+				values = Arrays.copyOf(values, size * 2);
+			}
+			targets[size] = target;
+			values[size++] = value;
+		}
+	}
+
+	/**
+	 * 计算结果: 按 id 升序的顶点和它们的最终值
+	 */
+	public static class Result {
+		private final int[] ids;
+		private final double[] values;
+		private final int supersteps;
+		private final long messages;
+
+		private Result(int[] ids, double[] values, int supersteps, long messages) {
+			this.ids = ids;
+			this.values = values;
+			this.supersteps = supersteps;
+			this.messages = messages;
+		}
+
+		public double value(int vertexId) {
+			int index = Arrays.binarySearch(ids, vertexId);
+			if(index < 0)
+				throw new IllegalArgumentException("no vertex " + vertexId);
+			return values[index];
+		}
+
+		public int[] vertexIds() {
+			return ids.clone();
+		}
+
+		/** 和 {@link #vertexIds()} 对齐 */
+		public double[] values() {
+			return values.clone();
+		}
+
+		public int supersteps() {
+			return supersteps;
+		}
+
+		public long messages() {
+			return messages;
+		}
+	}
+
+	public static void main(String[] args) {
+		int[] edges = GraphGenerator.rmat(12, 8, 1);
+		DirectedGraph<Integer, Integer> graph = GraphGenerator.populate(new DirectedGraph<Integer, Integer>(), 1 << 12, edges);
+		PregelEngine engine = new PregelEngine(graph);
+
+		/* 单源最短路: 值是到 0 的距离, 只在变短时继续传播 */
+		Result distances = engine.run(new VertexProgram() {
+			@Override
+			public double initialValue(int vertexId) {
+				return Double.POSITIVE_INFINITY;
+			}
+			@Override
+			public void compute(Context vertex, Messages messages) {
+				double best = vertex.superstep() == 0 && vertex.vertexId() == 0 ? 0 : vertex.value();
+				for(int i = 0; i < messages.size(); i++)
+					best = Math.min(best, messages.get(i));
+				if(best < vertex.value()) {
+					vertex.setValue(best);
+					for(int i = 0; i < vertex.outDegree(); i++)
+						vertex.sendAlong(i, best + vertex.weight(i));
+				}
+				vertex.voteToHalt();
+			}
+		}, Math::min, Integer.MAX_VALUE);
+		System.out.println(String.format("SSSP: %d supersteps, %d messages, distance(0 -> 100) = %s",
+				distances.supersteps(), distances.messages(), distances.value(100)));
+
+		/* PageRank, 固定 20 步 */
+		Result ranks = engine.run(new VertexProgram() {
+			@Override
+			public void compute(Context vertex, Messages messages) {
+				double sum = 0;
+				for(int i = 0; i < messages.size(); i++)
+					sum += messages.get(i);
+				vertex.setValue(vertex.superstep() == 0 ? 1.0 / vertex.vertexCount() : 0.15 / vertex.vertexCount() + 0.85 * sum);
+				if(vertex.outDegree() > 0)
+					vertex.sendToNeighbours(vertex.value() / vertex.outDegree());
+			}
+		}, Double::sum, 20);
+		System.out.println(String.format("PageRank: rank(0) = %.6f", ranks.value(0)));
+	}
+}
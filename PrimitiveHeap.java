@@ -0,0 +1,128 @@
+package utility;
+
+import java.util.Arrays;
+
+/**
+ * 最短路径用的 (键, 顶点) 二叉最小堆, 键是基本类型, 不装箱<br/><br/>
+ *
+ * 不支持减小键, 同一个顶点可以重复入堆, 出堆时由调用者跳过已经确定的顶点 (惰性删除).
+ */
+final class PrimitiveHeap {
+
+	private PrimitiveHeap() {
+	}
+
+	/** long 键的堆, 给 int 和 long 权重用 */
+	static final class LongKeyed {
+		private long[] keys = new long[16];
+		private int[] vertices = new int[16];
+		private int size;
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		void clear() {
+			size = 0;
+		}
+
+		void push(long key, int vertex) {
+			if(size == keys.length) {
+				keys = Arrays.copyOf(keys, size * 2);
+				vertices = Arrays.copyOf(vertices, size * 2);
+			}
+			int i = size++;
+			while(i > 0) {
+				int parent = (i - 1) >>> 1;
+				if(keys[parent] <= key)
+					break;
+				keys[i] = keys[parent];
+				vertices[i] = vertices[parent];
+				i = parent;
+			}
+			keys[i] = key;
+			vertices[i] = vertex;
+		}
+
+		long peekKey() {
+			return keys[0];
+		}
+
+		/** 弹出键最小的顶点 */
+		int pop() {
+			int top = vertices[0];
+			long key = keys[--size];
+			int vertex = vertices[size];
+			int i = 0;
+			for(int child = 1; child < size; child = 2 * i + 1) {
+				if(child + 1 < size && keys[child + 1] < keys[child])
+					child++;
+				if(key <= keys[child])
+					break;
+				keys[i] = keys[child];
+				vertices[i] = vertices[child];
+				i = child;
+			}
+			keys[i] = key;
+			vertices[i] = vertex;
+			return top;
+		}
+	}
+
+	/** double 键的堆 */
+	static final class DoubleKeyed {
+		private double[] keys = new double[16];
+		private int[] vertices = new int[16];
+		private int size;
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		void clear() {
+			size = 0;
+		}
+
+		void push(double key, int vertex) {
+			if(size == keys.length) {
+				keys = Arrays.copyOf(keys, size * 2);
+				vertices = Arrays.copyOf(vertices, size * 2);
+			}
+			int i = size++;
+			while(i > 0) {
+				int parent = (i - 1) >>> 1;
+				if(keys[parent] <= key)
+					break;
+				keys[i] = keys[parent];
+				vertices[i] = vertices[parent];
+				i = parent;
+			}
+			keys[i] = key;
+			vertices[i] = vertex;
+		}
+
+		double peekKey() {
+			return keys[0];
+		}
+
+		/** 弹出键最小的顶点 */
+		int pop() {
+			int top = vertices[0];
+			double key = keys[--size];
+			int vertex = vertices[size];
+			int i = 0;
+			for(int child = 1; child < size; child = 2 * i + 1) {
+				if(child + 1 < size && keys[child + 1] < keys[child])
+					child++;
+				if(key <= keys[child])
+					break;
+				keys[i] = keys[child];
+				vertices[i] = vertices[child];
+				i = child;
+			}
+			keys[i] = key;
+			vertices[i] = vertex;
+			return top;
+		}
+	}
+}
@@ -0,0 +1,171 @@
+package execrise;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * NFA, EnhanceNFA, OptimizedNFA 和 java.util.regex 的对比基准<br/><br/>
+ *
+ * 每个 (正则, 输入长度, 引擎) 组合先预热再计时, 输出吞吐 (ops/s, ns/char), 每次匹配分配的字节数,
+ * 最后对每个引擎比较最长两档输入的 ns/char, 比值接近 1 说明匹配时间与输入长度呈线性关系.<br/>
+ * 用法: <code>RegexBenchmark [预热毫秒] [计时毫秒]</code>
+ */
+public class RegexBenchmark {
+
+	public static void main(String[] args) {
+		long warmupMillis = args.length > 0 ? Long.parseLong(args[0]) : 200;
+		long measureMillis = args.length > 1 ? Long.parseLong(args[1]) : 500;
+		new RegexBenchmark(warmupMillis, measureMillis).run();
+	}
+
+	private static final int[] SIZES = {16, 256, 4096};
+	private static final long SEED = 20230101L;
+
+	private final long warmupNanos;
+	private final long measureNanos;
+	private final com.sun.management.ThreadMXBean threads;
+	private volatile int sink;
+
+	public RegexBenchmark(long warmupMillis, long measureMillis) {
+		this.warmupNanos = warmupMillis * 1_000_000L;
+		this.measureNanos = measureMillis * 1_000_000L;
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported())
+			this.threads = (com.sun.management.ThreadMXBean) bean;
+		else
+			this.threads = null;
+	}
+
+	public void run() {
+		Map<String, InputGenerator> workloads = new LinkedHashMap<String, InputGenerator>();
+		workloads.put("(apple|banana|cherry|date|elder|fig|grape|honeydew)*", RegexBenchmark::words);
+		workloads.put("((a*b*)*c*)*d", (random, size) -> letters(random, size - 1, "abc") + "d");
+		workloads.put("[a-z]+[0-9]{2,4}(-[a-z0-9]+)*", (random, size) -> letters(random, size - 5, "abcxyz") + "12-a1");
+		workloads.put("(a*)*b", (random, size) -> letters(random, size, "a"));
+
+		System.out.println(String.format("%-52s %6s %-13s %14s %10s %12s %8s",
+				"pattern", "size", "engine", "ops/s", "ns/char", "bytes/op", "vs jur"));
+		for(Map.Entry<String, InputGenerator> workload : workloads.entrySet()) {
+			String regexp = workload.getKey();
+			Map<String, Predicate<String>> engines = engines(regexp);
+			Map<String, List<Double>> nanosPerChar = new LinkedHashMap<String, List<Double>>();
+			for(int size : SIZES) {
+				String text = workload.getValue().generate(new Random(SEED), size);
+				double baseline = 0;
+				for(Map.Entry<String, Predicate<String>> engine : engines.entrySet()) {
+					Result result;
+					try {
+						result = measure(engine.getValue(), text);
+					} catch (StackOverflowError e) {
+						/* 回溯型引擎在病态正则上可能直接爆栈, 这本身就是要报告的最坏情况 */
+						nanosPerChar.computeIfAbsent(engine.getKey(), key -> new ArrayList<Double>()).add(Double.NaN);
+						System.out.println(String.format("%-52s %6d %-13s %14s", regexp, text.length(), engine.getKey(), "StackOverflowError"));
+						continue;
+					}
+					if(engine.getKey().equals("jur"))
+						baseline = result.opsPerSecond;
+					nanosPerChar.computeIfAbsent(engine.getKey(), key -> new ArrayList<Double>()).add(result.nanosPerOp / text.length());
+					System.out.println(String.format("%-52s %6d %-13s %14.1f %10.2f %12s %8s",
+							regexp, text.length(), engine.getKey(), result.opsPerSecond, result.nanosPerOp / text.length(),
+							result.bytesPerOp < 0 ? "n/a" : String.format("%.0f", result.bytesPerOp),
+							baseline > 0 ? String.format("%.2fx", result.opsPerSecond / baseline) : "-"));
+				}
+			}
+			for(Map.Entry<String, List<Double>> entry : nanosPerChar.entrySet()) {
+				List<Double> values = entry.getValue();
+				System.out.println(String.format("    %-13s ns/char at %d vs %d chars: x%.2f",
+						entry.getKey(), SIZES[SIZES.length - 1], SIZES[SIZES.length - 2],
+						values.get(values.size() - 1) / values.get(values.size() - 2)));
+			}
+		}
+	}
+
+	/* jur 放在第一个, 作为后面各引擎的对比基准 */
+	private static Map<String, Predicate<String>> engines(String regexp) {
+		Map<String, Predicate<String>> engines = new LinkedHashMap<String, Predicate<String>>();
+		Pattern pattern = Pattern.compile(regexp);
+		engines.put("jur", text -> pattern.matcher(text).matches());
+		NFA nfa = quietly(() -> new NFA(regexp));
+		engines.put("NFA", nfa::recognizes);
+		EnhanceNFA enhance = quietly(() -> new EnhanceNFA(regexp));
+		engines.put("EnhanceNFA", enhance::recognizes);
+		OptimizedNFA optimized = enhance.optimize();
+		engines.put("OptimizedNFA", optimized::recognizes);
+		return engines;
+	}
+
+	private Result measure(Predicate<String> engine, String text) {
+		loop(engine, text, warmupNanos);
+		long allocatedBefore = allocatedBytes();
+		long begin = System.nanoTime();
+		long ops = loop(engine, text, measureNanos);
+		long elapsed = System.nanoTime() - begin;
+		long allocatedAfter = allocatedBytes();
+		Result result = new Result();
+		result.nanosPerOp = (double) elapsed / ops;
+		result.opsPerSecond = ops * 1e9 / elapsed;
+		result.bytesPerOp = threads == null ? -1 : (double) (allocatedAfter - allocatedBefore) / ops;
+		return result;
+	}
+
+	private long loop(Predicate<String> engine, String text, long budgetNanos) {
+		long deadline = System.nanoTime() + budgetNanos;
+		long ops = 0;
+		int matched = 0;
+		do {
+			if(engine.test(text))
+				matched++;
+			ops++;
+		} while(System.nanoTime() < deadline);
+		sink += matched;
+		return ops;
+	}
+
+	private long allocatedBytes() {
+		return threads == null ? 0 : threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static String words(Random random, int size) {
+		String[] words = {"apple", "banana", "cherry", "date", "elder", "fig", "grape", "honeydew"};
+		StringBuilder builder = new StringBuilder(size + 8);
+		while(builder.length() < size)
+			builder.append(words[random.nextInt(words.length)]);
+		return builder.toString();
+	}
+
+	private static String letters(Random random, int size, String alphabet) {
+		StringBuilder builder = new StringBuilder(size);
+		for(int i = 0; i < size; i++)
+			builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+		return builder.toString();
+	}
+
+	/* 构造器会打印调试信息, 基准输出里不需要 */
+	private static <T> T quietly(java.util.function.Supplier<T> constructor) {
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+		try {
+			return constructor.get();
+		} finally {
+			System.setOut(out);
+		}
+	}
+
+	private interface InputGenerator {
+		String generate(Random random, int size);
+	}
+
+	private static class Result {
+		private double opsPerSecond;
+		private double nanosPerOp;
+		private double bytesPerOp;
+	}
+}
@@ -0,0 +1,531 @@
+package execrise;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 正则表达式的词法结果, 供 {@link NFA} 和 {@link EnhanceNFA} 共用<br/><br/>
+ *
+ * 每个 token 对应自动机的一个状态, 状态 length() 为接受状态. 支持的语法:
+ * <ul>
+ *  <li>字面字符, <code>.</code>, 转义 <code>\d \w \s \D \W \S \n \t \r \f</code> 以及 <code>\</code> 加任意元字符,
+ *  其它字母或数字的转义 (如 <code>\b \1</code>) 不支持, 直接报错</li>
+ *  <li>字符类 <code>[a-z0-9_]</code>, <code>[^...]</code>, 以位图和区间保存, 只占一个状态</li>
+ *  <li><code>( ) | * + ?</code>, 以及有界重复 <code>{m} {m,} {m,n}</code> (展开成 m 个必选副本和 n-m 个可选副本,
+ *  嵌套重复会相乘, 展开后的 token 总数超过 {@link #MAX_TOKENS} 时报错)</li>
+ * </ul>
+ * 顶层出现 <code>|</code> 时整个表达式会被隐式地包在一对括号里.
+ */
+final class RegexProgram {
+	static final int LITERAL = 0;
+	static final int ANY = 1;
+	static final int CLASS = 2;
+	static final int LEFT = 3;
+	static final int RIGHT = 4;
+	static final int OR = 5;
+	static final int STAR = 6;
+	static final int PLUS = 7;
+	static final int QUESTION = 8;
+
+	private static final int MAX_REPEAT = 1000;
+	/* 展开重复之后的 token 上限, 也就是自动机状态数的上限 */
+	static final int MAX_TOKENS = 1 << 18;
+
+	interface EdgeSink {
+		void addEdge(int v, int w);
+	}
+
+	private final int length;
+	private final int[] kinds;
+	private final char[] literals;
+	private final CharClass[] classes;
+
+	RegexProgram(String pattern) {
+		List<Token> tokens = new Lexer(pattern).tokenize();
+		this.length = tokens.size();
+		this.kinds = new int[length];
+		this.literals = new char[length];
+		this.classes = new CharClass[length];
+		for(int i = 0; i < length; i++) {
+			Token token = tokens.get(i);
+			kinds[i] = token.kind;
+			literals[i] = token.literal;
+			classes[i] = token.charClass;
+		}
+	}
+
+	int length() {
+		return length;
+	}
+
+	int kind(int v) {
+		return kinds[v];
+	}
+
+	/**
+	 * 是否是消耗一个输入字符的状态 (字面字符, <code>.</code> 或字符类)
+	 */
+	boolean consumes(int v) {
+		return v < length && (kinds[v] == LITERAL || kinds[v] == ANY || kinds[v] == CLASS);
+	}
+
+	/**
+	 * 匹配的字符集合相同的状态返回相等的 key, 用于合并等价状态
+	 */
+	Object matchKey(int v) {
+		if(v >= length)
+			return Arrays.asList(-1);
+		return Arrays.asList(kinds[v], literals[v], classes[v]);
+	}
+
+	boolean matches(int v, char c) {
+		if(v >= length)
+			return false;
+		switch(kinds[v]) {
+		case LITERAL:
+			return literals[v] == c;
+		case ANY:
+			return true;
+		case CLASS:
+			return classes[v].contains(c);
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * 按 Thompson 构造生成 epsilon 转换, 状态 v 匹配一个字符后总是转到 v+1
+	 */
+	void epsilonTransitions(EdgeSink sink) {
+		Deque<Integer> operations = new LinkedList<Integer>();
+		for(int i = 0; i < length; i++) {
+			int leftPointer = i;
+			if(kinds[i] == LEFT || kinds[i] == OR) {
+				operations.push(i);
+			}
+			else if(kinds[i] == RIGHT) {
+				List<Integer> orIndexs = new ArrayList<Integer>();
+				while(kinds[operations.peekFirst()] != LEFT) {
+					int orIndex = operations.pop();
+					sink.addEdge(orIndex, i);
+					orIndexs.add(orIndex);
+				}
+				leftPointer = operations.pop();
+				for(int orIndex : orIndexs)
+					sink.addEdge(leftPointer, orIndex + 1);
+			}
+			if(i < length - 1) {
+				if(kinds[i + 1] == STAR) {
+					sink.addEdge(leftPointer, i + 1);
+					sink.addEdge(i + 1, leftPointer);
+				}
+				else if(kinds[i + 1] == PLUS) {
+					sink.addEdge(i + 1, leftPointer);
+				}
+				else if(kinds[i + 1] == QUESTION) {
+					sink.addEdge(leftPointer, i + 1);
+				}
+			}
+			if(kinds[i] == LEFT || kinds[i] == RIGHT || kinds[i] == STAR || kinds[i] == PLUS || kinds[i] == QUESTION)
+				sink.addEdge(i, i + 1);
+		}
+	}
+
+	private static class Token {
+		private final int kind;
+		private final char literal;
+		private final CharClass charClass;
+
+		private Token(int kind, char literal, CharClass charClass) {
+			this.kind = kind;
+			this.literal = literal;
+			this.charClass = charClass;
+		}
+		private static Token of(int kind) {
+			return new Token(kind, '\0', null);
+		}
+	}
+
+	private static class Lexer {
+		private final String pattern;
+		private int position;
+		private final List<Token> tokens = new ArrayList<Token>();
+		private final Deque<Integer> openings = new LinkedList<Integer>();
+		/* 最近一个可被量词修饰的原子在 tokens 中的起点, -1 表示没有 */
+		private int atomStart = -1;
+		private boolean topLevelOr;
+
+		private Lexer(String pattern) {
+			this.pattern = pattern;
+		}
+
+		private List<Token> tokenize() {
+			while(position < pattern.length()) {
+				char c = pattern.charAt(position++);
+				switch(c) {
+				case '(':
+					openings.push(tokens.size());
+					tokens.add(Token.of(LEFT));
+					atomStart = -1;
+					break;
+				case ')':
+					if(openings.isEmpty())
+						throw error("unbalanced ')'");
+					tokens.add(Token.of(RIGHT));
+					atomStart = openings.pop();
+					break;
+				case '|':
+					if(openings.isEmpty())
+						topLevelOr = true;
+					tokens.add(Token.of(OR));
+					atomStart = -1;
+					break;
+				case '*':
+					quantifier(STAR);
+					break;
+				case '+':
+					quantifier(PLUS);
+					break;
+				case '?':
+					quantifier(QUESTION);
+					break;
+				case '{':
+					repeat();
+					break;
+				case '.':
+					atom(Token.of(ANY));
+					break;
+				case '[':
+					atom(new Token(CLASS, '\0', charClass()));
+					break;
+				case '\\':
+					atom(escape());
+					break;
+				default:
+					atom(new Token(LITERAL, c, null));
+				}
+			}
+			if(!openings.isEmpty())
+				throw error("unbalanced '('");
+			if(topLevelOr) {
+				tokens.add(0, Token.of(LEFT));
+				tokens.add(Token.of(RIGHT));
+			}
+			return tokens;
+		}
+
+		private void atom(Token token) {
+			atomStart = tokens.size();
+			tokens.add(token);
+		}
+
+		private void quantifier(int kind) {
+			if(atomStart < 0)
+				throw error("nothing to repeat");
+			tokens.add(Token.of(kind));
+			atomStart = -1;
+		}
+
+		private void repeat() {
+			if(atomStart < 0)
+				throw error("nothing to repeat");
+			int close = pattern.indexOf('}', position);
+			if(close < 0)
+				throw error("unclosed '{'");
+			String body = pattern.substring(position, close);
+			position = close + 1;
+			int comma = body.indexOf(',');
+			int min;
+			int max;
+			try {
+				if(comma < 0) {
+					min = Integer.parseInt(body.trim());
+					max = min;
+				}
+				else {
+					min = Integer.parseInt(body.substring(0, comma).trim());
+					String upper = body.substring(comma + 1).trim();
+					max = upper.isEmpty() ? -1 : Integer.parseInt(upper);
+				}
+			} catch (NumberFormatException e) {
+				throw error("malformed repetition {" + body + "}");
+			}
+			if(min < 0 || min > MAX_REPEAT || max > MAX_REPEAT || (max >= 0 && max < min))
+				throw error("illegal repetition {" + body + "}");
+			long width = tokens.size() - atomStart;
+			long expanded = atomStart + width * min + (max < 0 ? width + 1 : (width + 1) * (max - min));
+			if(expanded > MAX_TOKENS)
+				throw error("pattern too large");
+			List<Token> atom = new ArrayList<Token>(tokens.subList(atomStart, tokens.size()));
+			tokens.subList(atomStart, tokens.size()).clear();
+			for(int i = 0; i < min; i++)
+				tokens.addAll(atom);
+			if(max < 0) {
+				tokens.addAll(atom);
+				tokens.add(Token.of(STAR));
+			}
+			else {
+				for(int i = min; i < max; i++) {
+					tokens.addAll(atom);
+					tokens.add(Token.of(QUESTION));
+				}
+			}
+			atomStart = -1;
+		}
+
+		private Token escape() {
+			if(position >= pattern.length())
+				throw error("trailing '\\'");
+			char c = pattern.charAt(position++);
+			CharClass predefined = CharClass.predefined(c);
+			if(predefined != null)
+				return new Token(CLASS, '\0', predefined);
+			return new Token(LITERAL, control(c), null);
+		}
+
+		private CharClass charClass() {
+			CharClass.Builder builder = new CharClass.Builder();
+			if(position < pattern.length() && pattern.charAt(position) == '^') {
+				builder.negate();
+				position++;
+			}
+			boolean first = true;
+			while(true) {
+				if(position >= pattern.length())
+					throw error("unclosed '['");
+				char c = pattern.charAt(position++);
+				if(c == ']' && !first)
+					break;
+				first = false;
+				if(c == '\\') {
+					if(position >= pattern.length())
+						throw error("trailing '\\'");
+					char escaped = pattern.charAt(position++);
+					int[] predefined = CharClass.predefinedRanges(escaped);
+					if(predefined != null) {
+						builder.addRanges(predefined);
+						continue;
+					}
+					c = control(escaped);
+				}
+				if(position + 1 < pattern.length() && pattern.charAt(position) == '-' && pattern.charAt(position + 1) != ']') {
+					position++;
+					char upper = pattern.charAt(position++);
+					if(upper == '\\') {
+						if(position >= pattern.length())
+							throw error("trailing '\\'");
+						upper = control(pattern.charAt(position++));
+					}
+					if(upper < c)
+						throw error("illegal range " + c + "-" + upper);
+					builder.addRange(c, upper);
+				}
+				else {
+					builder.addRange(c, c);
+				}
+			}
+			return builder.build();
+		}
+
+		/* 转义后的字面字符; 未支持的字母或数字转义报错, 不当作字面字符 */
+		private char control(char c) {
+			switch(c) {
+			case 'n':
+				return '\n';
+			case 't':
+				return '\t';
+			case 'r':
+				return '\r';
+			case 'f':
+				return '\f';
+			default:
+				if(Character.isLetterOrDigit(c))
+					throw error("unsupported escape \\" + c);
+				return c;
+			}
+		}
+
+		private IllegalArgumentException error(String message) {
+			return new IllegalArgumentException(String.format("%s at index %d in pattern \"%s\"", message, position - 1, pattern));
+		}
+	}
+
+	/**
+	 * 字符类: ASCII 部分是 128 位的位图, 其余部分是有序不相交的闭区间
+	 */
+	static final class CharClass {
+		private static final int[] DIGIT = {'0', '9'};
+		private static final int[] WORD = {'0', '9', 'A', 'Z', '_', '_', 'a', 'z'};
+		private static final int[] SPACE = {'\t', '\r', ' ', ' '};
+
+		private final long low;
+		private final long high;
+		private final int[] ranges;
+		private final boolean negated;
+
+		private CharClass(long low, long high, int[] ranges, boolean negated) {
+			this.low = low;
+			this.high = high;
+			this.ranges = ranges;
+			this.negated = negated;
+		}
+
+		boolean contains(char c) {
+			boolean hit;
+			if(c < 64)
+				hit = (low & (1L << c)) != 0;
+			else if(c < 128)
+				hit = (high & (1L << (c - 64))) != 0;
+			else
+				hit = inRanges(c);
+			return hit != negated;
+		}
+
+		private boolean inRanges(char c) {
+			int lo = 0;
+			int hi = ranges.length / 2 - 1;
+			while(lo <= hi) {
+				int mid = (lo + hi) >>> 1;
+				if(c < ranges[2 * mid])
+					hi = mid - 1;
+				else if(c > ranges[2 * mid + 1])
+					lo = mid + 1;
+				else
+					return true;
+			}
+			return false;
+		}
+
+		static CharClass predefined(char c) {
+			int[] ranges = predefinedRanges(c);
+			if(ranges == null)
+				return null;
+			return new Builder().addRanges(ranges).build();
+		}
+
+		static int[] predefinedRanges(char c) {
+			switch(c) {
+			case 'd':
+				return DIGIT;
+			case 'w':
+				return WORD;
+			case 's':
+				return SPACE;
+			case 'D':
+				return complement(DIGIT);
+			case 'W':
+				return complement(WORD);
+			case 'S':
+				return complement(SPACE);
+			default:
+				return null;
+			}
+		}
+
+		private static int[] complement(int[] ranges) {
+			int[] result = new int[ranges.length + 2];
+			int size = 0;
+			int from = 0;
+			for(int i = 0; i < ranges.length; i += 2) {
+				if(ranges[i] > from) {
+					result[size++] = from;
+					result[size++] = ranges[i] - 1;
+				}
+				from = ranges[i + 1] + 1;
+			}
+			if(from <= Character.MAX_VALUE) {
+				result[size++] = from;
+				result[size++] = Character.MAX_VALUE;
+			}
+			return Arrays.copyOf(result, size);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(low, high, Arrays.hashCode(ranges), negated);
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if(this == object)
+				return true;
+			if(!(object instanceof CharClass))
+				return false;
+			CharClass another = (CharClass) object;
+			return low == another.low && high == another.high && negated == another.negated
+					&& Arrays.equals(ranges, another.ranges);
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder(negated ? "[^" : "[");
+			for(int c = 0; c < 128; c++)
+				if(c < 64 ? (low & (1L << c)) != 0 : (high & (1L << (c - 64))) != 0)
+					builder.append((char) c);
+			for(int i = 0; i < ranges.length; i += 2)
+				builder.append((char) ranges[i]).append('-').append((char) ranges[i + 1]);
+			return builder.append(']').toString();
+		}
+
+		static final class Builder {
+			private long low;
+			private long high;
+			private int[] ranges = new int[8];
+			private int size;
+			private boolean negated;
+
+			Builder negate() {
+				negated = true;
+				return this;
+			}
+
+			Builder addRanges(int[] pairs) {
+				for(int i = 0; i < pairs.length; i += 2)
+					addRange(pairs[i], pairs[i + 1]);
+				return this;
+			}
+
+			Builder addRange(int from, int to) {
+				for(int c = from; c <= to && c < 128; c++) {
+					if(c < 64)
+						low |= 1L << c;
+					else
+						high |= 1L << (c - 64);
+				}
+				if(to >= 128) {
+					if(size == ranges.length)
+						ranges = Arrays.copyOf(ranges, size * 2);
+					ranges[size++] = Math.max(from, 128);
+					ranges[size++] = to;
+				}
+				return this;
+			}
+
+			CharClass build() {
+				int pairs = size / 2;
+				long[] packed = new long[pairs];
+				for(int i = 0; i < pairs; i++)
+					packed[i] = ((long) ranges[2 * i] << 32) | ranges[2 * i + 1];
+				Arrays.sort(packed);
+				int[] merged = new int[size];
+				int count = 0;
+				for(long range : packed) {
+					int from = (int) (range >>> 32);
+					int to = (int) range;
+					if(count > 0 && from <= merged[count - 1] + 1) {
+						merged[count - 1] = Math.max(merged[count - 1], to);
+					}
+					else {
+						merged[count++] = from;
+						merged[count++] = to;
+					}
+				}
+				return new CharClass(low, high, Arrays.copyOf(merged, count), negated);
+			}
+		}
+	}
+}
@@ -0,0 +1,301 @@
+package execrise;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 按行流式匹配: 输入可以分块送入 (Reader, CharBuffer, 或 UTF-8/ASCII 编码的 ByteBuffer),
+ * NFA 状态集合和未解码完的 UTF-8 字节跨块保留, 每一行整体被 {@link NFA#recognizes(String)} 接受时立即回调.
+ * 内存只与正则长度有关, 与输入大小无关.
+ * 偏移量的单位与输入一致: 字符输入按 char 计, 字节输入按 byte 计.
+ */
+public class StreamingMatcher {
+
+	public interface MatchListener {
+		void matched(long line, long start, long end);
+	}
+
+	public static void main(String[] args) throws IOException {
+		NFA nfa = new NFA("(A|B|(EE|F))D");
+		StreamingMatcher matcher = new StreamingMatcher(nfa, (line, start, end) ->
+				System.out.println(String.format("line=%d, start=%d, end=%d", line, start, end)));
+		if(args.length > 0) {
+			StreamingMatcher.scan(Paths.get(args[0]), matcher);
+			return;
+		}
+		matcher.feed("AD\nEE");
+		matcher.feed("D\r\nC");
+		matcher.feed("D\nFD");
+		matcher.finish();
+	}
+
+	private static final int READ_BUFFER = 8192;
+	private static final long MAP_WINDOW = 1L << 26;
+	private static final char REPLACEMENT = '\uFFFD';
+
+	private final NFA nfa;
+	private final MatchListener listener;
+	private final int accept;
+	private final int[][] adj;
+	private final int[] start;
+	private final boolean[] marked;
+	private final int[] stack;
+	private int[] current;
+	private int currentSize;
+	private int[] next;
+	private int nextSize;
+
+	private long position;
+	private long line;
+	private long lineStart;
+	private boolean pendingCR;
+	private long matches;
+	/* 跨块未解码完的 UTF-8 码点 */
+	private int codePoint;
+	private int remainingBytes;
+
+	public StreamingMatcher(NFA nfa, MatchListener listener) {
+		this.nfa = nfa;
+		this.listener = listener;
+		this.accept = nfa.accept();
+		this.adj = nfa.epsilonAdjacency();
+		int V = adj.length;
+		this.marked = new boolean[V];
+		this.stack = new int[V];
+		this.current = new int[V];
+		this.next = new int[V];
+		closure(0);
+		this.start = new int[nextSize];
+		System.arraycopy(next, 0, start, 0, nextSize);
+		unmark();
+		reset();
+	}
+
+	public void reset() {
+		position = 0;
+		line = 0;
+		lineStart = 0;
+		pendingCR = false;
+		matches = 0;
+		codePoint = 0;
+		remainingBytes = 0;
+		restart();
+	}
+
+	public void feed(CharSequence chunk) {
+		for(int i = 0; i < chunk.length(); i++) {
+			process(chunk.charAt(i));
+			position++;
+		}
+	}
+
+	public void feed(char[] chunk, int offset, int length) {
+		for(int i = offset; i < offset + length; i++) {
+			process(chunk[i]);
+			position++;
+		}
+	}
+
+	public void feed(CharBuffer chunk) {
+		if(chunk.hasArray()) {
+			feed(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+			chunk.position(chunk.limit());
+			return;
+		}
+		while(chunk.hasRemaining()) {
+			process(chunk.get());
+			position++;
+		}
+	}
+
+	/**
+	 * 读空 reader, 但不结束最后一行; 调用方在所有输入送完后调用 {@link #finish()}
+	 */
+	public void feed(Reader reader) throws IOException {
+		char[] buffer = new char[READ_BUFFER];
+		int length;
+		while((length = reader.read(buffer)) != -1)
+			feed(buffer, 0, length);
+	}
+
+	/**
+	 * 按 UTF-8 解码 (ASCII 是其子集), 多字节字符可以被拆在两个块之间
+	 */
+	public void feed(ByteBuffer chunk) {
+		while(chunk.hasRemaining()) {
+			int b = chunk.get() & 0xFF;
+			if(b < 0x80) {
+				if(remainingBytes > 0)
+					malformed();
+				process((char) b);
+			}
+			else if((b & 0xC0) == 0x80) {
+				if(remainingBytes == 0) {
+					process(REPLACEMENT);
+				}
+				else {
+					codePoint = (codePoint << 6) | (b & 0x3F);
+					if(--remainingBytes == 0)
+						decoded(codePoint);
+				}
+			}
+			else {
+				if(remainingBytes > 0)
+					malformed();
+				if((b & 0xE0) == 0xC0) {
+					codePoint = b & 0x1F;
+					remainingBytes = 1;
+				}
+				else if((b & 0xF0) == 0xE0) {
+					codePoint = b & 0x0F;
+					remainingBytes = 2;
+				}
+				else if((b & 0xF8) == 0xF0) {
+					codePoint = b & 0x07;
+					remainingBytes = 3;
+				}
+				else {
+					process(REPLACEMENT);
+				}
+			}
+			position++;
+		}
+	}
+
+	/**
+	 * 结束输入: 没有以换行结尾的最后一行在这里判定
+	 */
+	public void finish() {
+		if(remainingBytes > 0)
+			malformed();
+		if(position > lineStart || pendingCR) {
+			if(pendingCR)
+				step('\r');
+			pendingCR = false;
+			endOfLine(position);
+		}
+	}
+
+	public long matches() {
+		return matches;
+	}
+
+	public long position() {
+		return position;
+	}
+
+	public long lines() {
+		return line;
+	}
+
+	/**
+	 * 以内存映射的方式分窗口扫描文件, 结束后调用 {@link #finish()}
+	 */
+	public static void scan(Path path, StreamingMatcher matcher) throws IOException {
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+			long size = channel.size();
+			for(long offset = 0; offset < size; offset += MAP_WINDOW) {
+				MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(MAP_WINDOW, size - offset));
+				matcher.feed(window);
+			}
+		}
+		matcher.finish();
+	}
+
+	private void decoded(int cp) {
+		if(cp < 0x10000) {
+			process((char) cp);
+			return;
+		}
+		process(Character.highSurrogate(cp));
+		process(Character.lowSurrogate(cp));
+	}
+
+	private void malformed() {
+		remainingBytes = 0;
+		codePoint = 0;
+		process(REPLACEMENT);
+	}
+
+	private void process(char c) {
+		if(c == '\n') {
+			long end = pendingCR ? position - 1 : position;
+			pendingCR = false;
+			endOfLine(end);
+			lineStart = position + 1;
+			return;
+		}
+		if(pendingCR) {
+			pendingCR = false;
+			step('\r');
+		}
+		if(c == '\r') {
+			pendingCR = true;
+			return;
+		}
+		step(c);
+	}
+
+	private void endOfLine(long end) {
+		for(int i = 0; i < currentSize; i++) {
+			if(current[i] == accept) {
+				matches++;
+				listener.matched(line, lineStart, end);
+				break;
+			}
+		}
+		line++;
+		restart();
+	}
+
+	private void restart() {
+		System.arraycopy(start, 0, current, 0, start.length);
+		currentSize = start.length;
+	}
+
+	private void step(char c) {
+		if(currentSize == 0)
+			return;
+		nextSize = 0;
+		for(int i = 0; i < currentSize; i++) {
+			int v = current[i];
+			if(nfa.matches(v, c))
+				closure(v + 1);
+		}
+		unmark();
+		int[] swap = current;
+		current = next;
+		currentSize = nextSize;
+		next = swap;
+	}
+
+	private void closure(int source) {
+		if(marked[source])
+			return;
+		int top = 0;
+		marked[source] = true;
+		stack[top++] = source;
+		while(top > 0) {
+			int v = stack[--top];
+			next[nextSize++] = v;
+			for(int w : adj[v]) {
+				if(!marked[w]) {
+					marked[w] = true;
+					stack[top++] = w;
+				}
+			}
+		}
+	}
+
+	private void unmark() {
+		for(int i = 0; i < nextSize; i++)
+			marked[next[i]] = false;
+	}
+}
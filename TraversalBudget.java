@@ -0,0 +1,78 @@
+package utility;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次 {@link BudgetedTraversal#run(TraversalBudget)} 的预算: 最多访问的顶点数, 最多扫描的弧数, 截止时间和取消标志<br/><br/>
+ *
+ * 不可变, 每个 <code>with</code> 方法返回一个新的预算. 顶点数和弧数只算本次 <code>run</code>, 续跑时重新计数;
+ * 截止时间是 {@link System#nanoTime()} 上的绝对时刻, {@link #withTimeout(long, TimeUnit)} 在调用时就换算成绝对时刻,
+ * 所以每次续跑应当新建一个预算.
+ */
+public final class TraversalBudget {
+
+	/** 没有任何限制 */
+	public static final TraversalBudget UNLIMITED = new TraversalBudget(Long.MAX_VALUE, Long.MAX_VALUE, false, 0, null);
+
+	private final long maxVertices;
+	private final long maxArcs;
+	private final boolean hasDeadline;
+	private final long deadlineNanos;
+	private final CancellationToken token;
+
+	private TraversalBudget(long maxVertices, long maxArcs, boolean hasDeadline, long deadlineNanos, CancellationToken token) {
+		if(maxVertices < 0 || maxArcs < 0)
+			throw new IllegalArgumentException("limits must not be negative");
+		this.maxVertices = maxVertices;
+		this.maxArcs = maxArcs;
+		this.hasDeadline = hasDeadline;
+		this.deadlineNanos = deadlineNanos;
+		this.token = token;
+	}
+
+	/** 本次最多新访问的顶点数 */
+	public TraversalBudget withMaxVertices(long maxVertices) {
+		return new TraversalBudget(maxVertices, maxArcs, hasDeadline, deadlineNanos, token);
+	}
+
+	/** 本次最多扫描的弧数 */
+	public TraversalBudget withMaxArcs(long maxArcs) {
+		return new TraversalBudget(maxVertices, maxArcs, hasDeadline, deadlineNanos, token);
+	}
+
+	/** 截止时刻, 取自 {@link System#nanoTime()} */
+	public TraversalBudget withDeadline(long deadlineNanos) {
+		return new TraversalBudget(maxVertices, maxArcs, true, deadlineNanos, token);
+	}
+
+	/** 从现在起 <code>timeout</code> 之后截止 */
+	public TraversalBudget withTimeout(long timeout, TimeUnit unit) {
+		return withDeadline(System.nanoTime() + unit.toNanos(timeout));
+	}
+
+	public TraversalBudget withCancellation(CancellationToken token) {
+		return new TraversalBudget(maxVertices, maxArcs, hasDeadline, deadlineNanos, token);
+	}
+
+	public long maxVertices() {
+		return maxVertices;
+	}
+
+	public long maxArcs() {
+		return maxArcs;
+	}
+
+	boolean pastDeadline() {
+		return hasDeadline && System.nanoTime() - deadlineNanos >= 0;
+	}
+
+	boolean cancelled() {
+		return token != null && token.isCancelled();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("{maxVertices=%d, maxArcs=%d, deadline=%s, cancellable=%s}", maxVertices, maxArcs,
+				hasDeadline ? (deadlineNanos - System.nanoTime()) / 1_000_000 + "ms from now" : "none", token != null);
+	}
+}
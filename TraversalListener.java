@@ -0,0 +1,41 @@
+package utility;
+
+/**
+ * 遍历算法的观测接口<br/><br/>
+ *
+ * <code>Graph</code>, <code>DirectedGraph</code>, <code>UndirectedGraph</code> 中的每个遍历类在构造时读取一次
+ * {@link Graph#traversalListener()}, 之后把访问的顶点, 扫描的弧, 递归深度, 队列长度报告给它.
+ * 一个算法内部调用的其它算法 (例如 <code>Kosaraju</code> 里的 <code>DepthFirstOrder</code>) 会在外层的
+ * <code>started</code> / <code>finished</code> 之间再嵌套一对, 可以当作外层算法的阶段.<br/>
+ * 所有方法默认什么都不做; 没有安装监听器时用的是 {@link #NOOP}, 调用点只看到这一个实现, JIT 内联后等于没有调用.<br/>
+ * 回调发生在执行遍历的线程上.
+ */
+public interface TraversalListener {
+
+	TraversalListener NOOP = new TraversalListener() {
+	};
+
+	/** 一个算法开始, <code>algorithm</code> 为类名, 例如 "Kosaraju" */
+	default void started(String algorithm) {
+	}
+
+	/** 顶点第一次被标记 */
+	default void visited(int vertexId) {
+	}
+
+	/** 检查了一条弧 <code>fromId -&gt toId</code>, 无论终点是否已访问 */
+	default void scanned(int fromId, int toId) {
+	}
+
+	/** 深度优先类进入一层递归, <code>depth</code> 为当前深度, 起点为 0 */
+	default void depth(int depth) {
+	}
+
+	/** 广度优先类扩展完一个顶点后的队列长度 */
+	default void frontier(int size) {
+	}
+
+	/** 与最近一次未结束的 <code>started</code> 配对 */
+	default void finished(String algorithm) {
+	}
+}
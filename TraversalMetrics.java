@@ -0,0 +1,222 @@
+package utility;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 把遍历事件汇总成计数器和延迟直方图的 {@link TraversalListener}<br/><br/>
+ *
+ * 按算法名分别统计调用次数, 访问的顶点数, 扫描的弧数, 最大递归深度, 最大队列长度, 分配的字节数,
+ * 以及按 2 的幂分桶的耗时直方图. 嵌套调用的算法 (例如 <code>Kosaraju</code> 里的 <code>DepthFirstOrder</code>)
+ * 单独记一次, 它的计数同时也算进外层算法.<br/>
+ * 可以被多个线程同时使用, 用法: <code>Graph.setTraversalListener(metrics)</code>, 之后随时读取 {@link #snapshot()}
+ */
+public class TraversalMetrics implements TraversalListener {
+
+	private static final int BUCKETS = 64;
+
+	private final Map<String, Stats> stats = new ConcurrentHashMap<String, Stats>();
+	private final ThreadLocal<Deque<Frame>> frames = ThreadLocal.withInitial(ArrayDeque::new);
+	private final com.sun.management.ThreadMXBean threads;
+
+	public TraversalMetrics() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported())
+			this.threads = (com.sun.management.ThreadMXBean) bean;
+		else
+			this.threads = null;
+	}
+
+	@Override
+	public void started(String algorithm) {
+		frames.get().push(new Frame(algorithm, System.nanoTime(), allocatedBytes()));
+	}
+
+	@Override
+	public void visited(int vertexId) {
+		Frame frame = frames.get().peek();
+		if(frame != null)
+			frame.vertices++;
+	}
+
+	@Override
+	public void scanned(int fromId, int toId) {
+		Frame frame = frames.get().peek();
+		if(frame != null)
+			frame.edges++;
+	}
+
+	@Override
+	public void depth(int depth) {
+		Frame frame = frames.get().peek();
+		if(frame != null && depth > frame.maxDepth)
+			frame.maxDepth = depth;
+	}
+
+	@Override
+	public void frontier(int size) {
+		Frame frame = frames.get().peek();
+		if(frame != null && size > frame.maxFrontier)
+			frame.maxFrontier = size;
+	}
+
+	@Override
+	public void finished(String algorithm) {
+		Deque<Frame> stack = frames.get();
+		Frame frame = stack.poll();
+		if(frame == null)
+			return;
+		long nanos = System.nanoTime() - frame.startNanos;
+		long allocated = threads == null ? -1 : allocatedBytes() - frame.startAllocated;
+		stats.computeIfAbsent(frame.algorithm, Stats::new).record(frame, nanos, allocated);
+		Frame parent = stack.peek();
+		if(parent != null) {
+			parent.vertices += frame.vertices;
+			parent.edges += frame.edges;
+			parent.maxDepth = Math.max(parent.maxDepth, frame.maxDepth);
+			parent.maxFrontier = Math.max(parent.maxFrontier, frame.maxFrontier);
+		}
+	}
+
+	/** 算法名 -&gt 统计, 按算法名排序 */
+	public Map<String, Stats> snapshot() {
+		return Collections.unmodifiableMap(new TreeMap<String, Stats>(stats));
+	}
+
+	public void reset() {
+		stats.clear();
+	}
+
+	private long allocatedBytes() {
+		return threads == null ? 0 : threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for(Stats s : snapshot().values())
+			builder.append(s).append(System.lineSeparator());
+		return builder.toString();
+	}
+
+	/* 一次正在进行的遍历, 只被所在线程访问 */
+	private static class Frame {
+		private final String algorithm;
+		private final long startNanos;
+		private final long startAllocated;
+		private long vertices;
+		private long edges;
+		private int maxDepth;
+		private int maxFrontier;
+
+		private Frame(String algorithm, long startNanos, long startAllocated) {
+			this.algorithm = algorithm;
+			this.startNanos = startNanos;
+			this.startAllocated = startAllocated;
+		}
+	}
+
+	/**
+	 * 一个算法的累计统计
+	 */
+	public static class Stats {
+		private final String algorithm;
+		private final LongAdder calls = new LongAdder();
+		private final LongAdder vertices = new LongAdder();
+		private final LongAdder edges = new LongAdder();
+		private final LongAdder allocatedBytes = new LongAdder();
+		private final LongAdder totalNanos = new LongAdder();
+		private final AtomicLong maxDepth = new AtomicLong();
+		private final AtomicLong maxFrontier = new AtomicLong();
+		/* 第 i 个桶计数耗时在 [2^i, 2^(i+1)) 纳秒之间的调用 */
+		private final AtomicLongArray latency = new AtomicLongArray(BUCKETS);
+
+		private Stats(String algorithm) {
+			this.algorithm = algorithm;
+		}
+
+		private void record(Frame frame, long nanos, long allocated) {
+			calls.increment();
+			vertices.add(frame.vertices);
+			edges.add(frame.edges);
+			if(allocated >= 0)
+				allocatedBytes.add(allocated);
+			totalNanos.add(nanos);
+			maxDepth.accumulateAndGet(frame.maxDepth, Math::max);
+			maxFrontier.accumulateAndGet(frame.maxFrontier, Math::max);
+			latency.incrementAndGet(63 - Long.numberOfLeadingZeros(Math.max(nanos, 1)));
+		}
+
+		public String algorithm() {
+			return algorithm;
+		}
+
+		public long calls() {
+			return calls.sum();
+		}
+
+		public long vertices() {
+			return vertices.sum();
+		}
+
+		public long edges() {
+			return edges.sum();
+		}
+
+		public long allocatedBytes() {
+			return allocatedBytes.sum();
+		}
+
+		public long totalNanos() {
+			return totalNanos.sum();
+		}
+
+		public long maxDepth() {
+			return maxDepth.get();
+		}
+
+		public long maxFrontier() {
+			return maxFrontier.get();
+		}
+
+		/** 各桶的计数, 第 i 项对应耗时 [2^i, 2^(i+1)) 纳秒 */
+		public long[] latencyHistogram() {
+			long[] counts = new long[BUCKETS];
+			for(int i = 0; i < BUCKETS; i++)
+				counts[i] = latency.get(i);
+			return counts;
+		}
+
+		/** 耗时的 <code>quantile</code> 分位数的上界 (所在桶的上沿), 没有数据时为 0 */
+		public long latencyNanos(double quantile) {
+			long[] counts = latencyHistogram();
+			long total = 0;
+			for(long count : counts)
+				total += count;
+			if(total == 0)
+				return 0;
+			long rank = (long) Math.ceil(quantile * total);
+			long seen = 0;
+			for(int i = 0; i < BUCKETS; i++) {
+				seen += counts[i];
+				if(seen >= rank && counts[i] > 0)
+					return i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+			}
+			return Long.MAX_VALUE;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("{algorithm=%s, calls=%d, vertices=%d, edges=%d, maxDepth=%d, maxFrontier=%d, allocatedBytes=%d, p50<=%dns, p99<=%dns}",
+					algorithm, calls(), vertices(), edges(), maxDepth(), maxFrontier(), allocatedBytes(), latencyNanos(0.5), latencyNanos(0.99));
+		}
+	}
+}
@@ -21,6 +21,8 @@ public class UndirectedGraph<T1 extends Comparable<T1>, T2 extends Number> exten
 			return false;
 		dictionary.put(vertex.id, vertex);
 		adjacency.put(vertex.id, new HashSet<Arc<T2>>());
+		indexKey(vertex);
+		version++;
 		return true;
 	}
 
@@ -42,8 +44,10 @@ public class UndirectedGraph<T1 extends Comparable<T1>, T2 extends Number> exten
 			adjacency.put(endid, new HashSet<Arc<T2>>());
 		boolean addTo = adjacency.get(startid).add(new Arc<T2>(endid, comparableKey, startid));
 		boolean addFrom = adjacency.get(endid).add(new Arc<T2>(startid, comparableKey, endid));
-		if(addTo && addFrom)
+		if(addTo && addFrom) {
 			this.countOfArc++;
+			this.version++;
+		}
 		return addTo && addFrom;
 	}
 
@@ -62,6 +66,8 @@ public class UndirectedGraph<T1 extends Comparable<T1>, T2 extends Number> exten
 		
 		private boolean isValid;
 		private Map<Integer, Color> colors;
+		private final TraversalListener listener = Graph.traversalListener();
+		private int depth;
 		
 		public <T1 extends Comparable<T1>, T2 extends Number> Bipartite(UndirectedGraph<T1, T2> graph){
 			if(graph.adjacency == null || graph.adjacency.isEmpty())
@@ -71,7 +77,9 @@ public class UndirectedGraph<T1 extends Comparable<T1>, T2 extends Number> exten
 			colors = new HashMap<Integer, Color>();
 			for(int vertexId : vertexIds)
 				colors.put(vertexId, Color.UNCOLORED);
+			listener.started("Bipartite");
 			calculate(graph);
+			listener.finished("Bipartite");
 		}
 		private <T1 extends Comparable<T1>, T2 extends Number> void calculate(UndirectedGraph<T1, T2> graph) {
 			if(!isValid)
@@ -87,10 +95,15 @@ public class UndirectedGraph<T1 extends Comparable<T1>, T2 extends Number> exten
 		private <T extends Comparable<T>, T2 extends Number>void depthFirstSearch(
 				UndirectedGraph<T, T2> graph, int current, Color color) {
 			colors.put(current, color);
+			listener.visited(current);
+			listener.depth(depth);
 			Color anotherColor = (color == Color.RED) ? Color.BLACK : Color.RED;
 			for(Arc<T2> neighbour : graph.adjacency.get(current)) {
+				listener.scanned(current, neighbour.getId());
 				if(colors.get(neighbour.getId()).equals(Color.UNCOLORED)) {
+					depth++;
 					depthFirstSearch(graph, neighbour.getId(), anotherColor);
+					depth--;
 					if(!isValid)
 						return;
 				}
@@ -111,11 +124,15 @@ public class UndirectedGraph<T1 extends Comparable<T1>, T2 extends Number> exten
 	public static class CycleDetecting{
 		private Map<Integer, Boolean> marked;
 		private boolean hasCycle;
+		private final TraversalListener listener = Graph.traversalListener();
+		private int depth;
 		
 		public <T1 extends Comparable<T1>, T2 extends Number> CycleDetecting(Graph<T1, T2> graph){
 			this.marked = new HashMap<Integer, Boolean>();
 			this.hasCycle = false;
+			listener.started("CycleDetecting");
 			initialize(graph);
+			listener.finished("CycleDetecting");
 		}
 		private <T1 extends Comparable<T1>, T2 extends Number> void initialize(Graph<T1, T2> graph){
 			Set<Integer> vertexIds = graph.dictionary.keySet();
@@ -127,13 +144,19 @@ public class UndirectedGraph<T1 extends Comparable<T1>, T2 extends Number> exten
 		}
 		private <T1 extends Comparable<T1>, T2 extends Number> void depthFirstSearch(Graph<T1, T2> graph, int vertexId1, int vertexId2) {
 			marked.put(vertexId1, true);
+			listener.visited(vertexId1);
+			listener.depth(depth);
 			if(graph.adjacency == null || !graph.adjacency.containsKey(vertexId1)) {
 				hasCycle = false;
 				return;
 			}
 			for(Arc<T2> neighbour : graph.adjacency.get(vertexId1)) {
-				if(!marked.containsKey(neighbour.getId()) || !marked.get(neighbour.getId()).booleanValue())
+				listener.scanned(vertexId1, neighbour.getId());
+				if(!marked.containsKey(neighbour.getId()) || !marked.get(neighbour.getId()).booleanValue()) {
+					depth++;
 					depthFirstSearch(graph, neighbour.getId(), vertexId1);
+					depth--;
+				}
 				else if(neighbour.getId() != vertexId2)
 					hasCycle = true;
 			}
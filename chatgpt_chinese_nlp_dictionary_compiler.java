@@ -0,0 +1,74 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Offline dictionary compiler: turns a word list into the binary file read by
+ * {@link ChineseSegmenter.Dictionary#map(Path)}, so services skip building the trie at startup.
+ * Input is UTF-8, one {@code word [frequency]} per line; a missing frequency counts as 1,
+ * blank lines and lines starting with {@code #} are ignored, and repeated words add up.
+ */
+public class DictionaryCompiler {
+
+    public static ChineseSegmenter.Dictionary compile(Path wordList) throws IOException {
+        Map<String, Integer> frequencies = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(wordList, StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\\s+");
+                int frequency;
+                try {
+                    frequency = fields.length > 1 ? Integer.parseInt(fields[1]) : 1;
+                } catch (NumberFormatException e) {
+                    throw new IOException(wordList + ":" + number + ": bad frequency \"" + fields[1] + "\"");
+                }
+                if (frequency <= 0) {
+                    throw new IOException(wordList + ":" + number + ": frequency must be positive");
+                }
+                frequencies.merge(fields[0], frequency, Integer::sum);
+            }
+        }
+        return ChineseSegmenter.Dictionary.compile(frequencies);
+    }
+
+    /** Compiles {@code wordList} and atomically replaces {@code output} with the result. */
+    public static ChineseSegmenter.Dictionary compile(Path wordList, Path output) throws IOException {
+        ChineseSegmenter.Dictionary dictionary = compile(wordList);
+        dictionary.write(output);
+        return dictionary;
+    }
+
+    /**
+     * Maps {@code compiled} and swaps it into {@code segmenter} without pausing it: calls in progress
+     * finish on the old dictionary, whose mapping is released once nothing references it.
+     */
+    public static ChineseSegmenter.Dictionary reload(ChineseSegmenter segmenter, Path compiled) throws IOException {
+        return segmenter.swap(ChineseSegmenter.Dictionary.map(compiled));
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: DictionaryCompiler <word list> <output file>");
+            System.exit(2);
+        }
+        long begin = System.nanoTime();
+        ChineseSegmenter.Dictionary dictionary = compile(Paths.get(args[0]), Paths.get(args[1]));
+        System.out.println(String.format("%d words -> %s (%d bytes) in %d ms", dictionary.size(), args[1],
+                Files.size(Paths.get(args[1])), (System.nanoTime() - begin) / 1_000_000));
+
+        begin = System.nanoTime();
+        ChineseSegmenter.Dictionary mapped = ChineseSegmenter.Dictionary.map(Paths.get(args[1]));
+        System.out.println(String.format("mapped %d words in %d us", mapped.size(), (System.nanoTime() - begin) / 1_000));
+    }
+}
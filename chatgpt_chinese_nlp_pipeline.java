@@ -0,0 +1,199 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Reads a document stream, cuts it into batches of whole sentences, segments the batches in
+ * parallel on an executor and hands the results back in document order.
+ * At most {@code maxInFlight} batches are buffered, so memory does not grow with the input.
+ */
+public class SegmentationPipeline {
+    private static final String SENTENCE_DELIMITERS = "。！？；!?;\n";
+    private static final int READ_BUFFER = 8192;
+
+    /**
+     * Receives one batch of segmented text. Token i spans
+     * [i == 0 ? 0 : ends[i - 1], ends[i]) of {@code batch}; {@code offset} is where the batch starts in the stream.
+     */
+    public interface BatchConsumer {
+        void accept(long offset, String batch, int[] ends, int count);
+    }
+
+    private final ChineseSegmenter segmenter;
+    private final ExecutorService executor;
+    private final int batchChars;
+    private final int maxInFlight;
+
+    public SegmentationPipeline(ChineseSegmenter segmenter) {
+        this(segmenter, ForkJoinPool.commonPool(), 64 * 1024, 4 * ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    public SegmentationPipeline(ChineseSegmenter segmenter, ExecutorService executor, int batchChars, int maxInFlight) {
+        if (batchChars <= 0 || maxInFlight <= 0) {
+            throw new IllegalArgumentException("batchChars and maxInFlight must be positive");
+        }
+        this.segmenter = segmenter;
+        this.executor = executor;
+        this.batchChars = batchChars;
+        this.maxInFlight = maxInFlight;
+    }
+
+    public Metrics run(Reader reader, BatchConsumer consumer) throws IOException, InterruptedException {
+        long begin = System.nanoTime();
+        Metrics metrics = new Metrics();
+        Deque<Future<Batch>> inFlight = new ArrayDeque<>();
+        StringBuilder pending = new StringBuilder(batchChars * 2);
+        char[] buffer = new char[READ_BUFFER];
+        long offset = 0;
+        int length;
+
+        while ((length = reader.read(buffer)) != -1) {
+            pending.append(buffer, 0, length);
+            while (pending.length() >= batchChars) {
+                int cut = lastSentenceEnd(pending);
+                if (cut == 0) {
+                    /* no delimiter yet: wait for one, but never let a single run-on sentence grow unbounded */
+                    if (pending.length() < batchChars * 4) {
+                        break;
+                    }
+                    cut = pending.length();
+                }
+                offset = submit(pending.substring(0, cut), offset, inFlight, consumer, metrics);
+                pending.delete(0, cut);
+            }
+        }
+        if (pending.length() > 0) {
+            submit(pending.toString(), offset, inFlight, consumer, metrics);
+        }
+        while (!inFlight.isEmpty()) {
+            emit(inFlight.pollFirst(), consumer, metrics);
+        }
+
+        metrics.nanos = System.nanoTime() - begin;
+        return metrics;
+    }
+
+    private long submit(String text, long offset, Deque<Future<Batch>> inFlight, BatchConsumer consumer, Metrics metrics)
+            throws IOException, InterruptedException {
+        if (inFlight.size() >= maxInFlight) {
+            emit(inFlight.pollFirst(), consumer, metrics);
+        }
+        long batchOffset = offset;
+        inFlight.addLast(executor.submit(() -> segment(text, batchOffset)));
+        return offset + text.length();
+    }
+
+    /* each sentence is segmented on its own, through a CharBuffer view instead of a copy */
+    private Batch segment(String text, long offset) {
+        int[] ends = new int[text.length()];
+        int[] count = {0};
+        int start = 0;
+        while (start < text.length()) {
+            int end = start;
+            while (end < text.length() && SENTENCE_DELIMITERS.indexOf(text.charAt(end)) < 0) {
+                end++;
+            }
+            end = Math.min(end + 1, text.length());
+            int sentenceStart = start;
+            segmenter.segment(CharBuffer.wrap(text, start, end), (from, to) -> ends[count[0]++] = sentenceStart + to);
+            start = end;
+        }
+        return new Batch(offset, text, ends, count[0]);
+    }
+
+    private static void emit(Future<Batch> future, BatchConsumer consumer, Metrics metrics) throws IOException, InterruptedException {
+        Batch batch;
+        try {
+            batch = future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+        consumer.accept(batch.offset, batch.text, batch.ends, batch.count);
+        metrics.chars += batch.text.length();
+        metrics.tokens += batch.count;
+        metrics.batches++;
+    }
+
+    private static int lastSentenceEnd(StringBuilder text) {
+        for (int i = text.length() - 1; i >= 0; i--) {
+            if (SENTENCE_DELIMITERS.indexOf(text.charAt(i)) >= 0) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    private static class Batch {
+        private final long offset;
+        private final String text;
+        private final int[] ends;
+        private final int count;
+
+        private Batch(long offset, String text, int[] ends, int count) {
+            this.offset = offset;
+            this.text = text;
+            this.ends = ends;
+            this.count = count;
+        }
+    }
+
+    public static class Metrics {
+        private long chars;
+        private long tokens;
+        private long batches;
+        private long nanos;
+
+        public long chars() {
+            return chars;
+        }
+
+        public long tokens() {
+            return tokens;
+        }
+
+        public long batches() {
+            return batches;
+        }
+
+        public long nanos() {
+            return nanos;
+        }
+
+        public double charsPerSecond() {
+            return nanos == 0 ? 0 : chars * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("{chars=%d, tokens=%d, batches=%d, chars/sec=%.0f}", chars, tokens, batches, charsPerSecond());
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Set<String> dict = new HashSet<>(Arrays.asList("我", "爱", "中国", "北京", "天安门"));
+        ChineseSegmenter segmenter = new ChineseSegmenter(dict);
+        StringBuilder document = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            document.append("我爱北京天安门。中国！");
+        }
+
+        SegmentationPipeline pipeline = new SegmentationPipeline(segmenter);
+        long[] tokens = {0};
+        Metrics metrics = pipeline.run(new StringReader(document.toString()), (offset, batch, ends, count) -> tokens[0] += count);
+
+        System.out.println(metrics); // 7 tokens per 11 chars
+    }
+}
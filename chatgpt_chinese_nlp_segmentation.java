@@ -1,39 +1,436 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
+
 public class ChineseSegmenter {
-    private Set<String> dict;
+    public enum Mode {
+        /** Forward maximum matching: always take the longest dictionary word. */
+        MAXIMUM_MATCHING,
+        /** Build the word DAG of the sentence and take the path with the highest product of word probabilities. */
+        MAXIMUM_PROBABILITY
+    }
+
+    /* replaced wholesale by swap(); each segment call reads it once so a call never mixes two dictionaries */
+    private final AtomicReference<Dictionary> dictionary;
+    /* words added at run time; readers take a snapshot, writers publish a new version under the lock */
+    private volatile OverlayTrie overlay = OverlayTrie.EMPTY;
+    private final Object overlayLock = new Object();
+    private final Mode mode;
+    private final ThreadLocal<Lattice> lattices = ThreadLocal.withInitial(Lattice::new);
 
     public ChineseSegmenter(Set<String> dict) {
-        this.dict = dict;
+        this(dict, Mode.MAXIMUM_MATCHING);
+    }
+
+    /** Every word gets frequency 1. */
+    public ChineseSegmenter(Set<String> dict, Mode mode) {
+        this(Dictionary.compile(dict), mode);
+    }
+
+    public ChineseSegmenter(Map<String, Integer> frequencies, Mode mode) {
+        this(Dictionary.compile(frequencies), mode);
+    }
+
+    /**
+     * Shares an already compiled dictionary. The segmenter holds no mutable state apart from
+     * per-thread scratch arrays, so one instance can serve any number of threads.
+     */
+    public ChineseSegmenter(Dictionary dictionary, Mode mode) {
+        this.dictionary = new AtomicReference<>(dictionary);
+        this.mode = mode;
+    }
+
+    /**
+     * Atomically replaces the dictionary and returns the previous one. Calls already running finish
+     * on the dictionary they started with; later calls see the new one.
+     */
+    public Dictionary swap(Dictionary replacement) {
+        return dictionary.getAndSet(replacement);
+    }
+
+    public Dictionary dictionary() {
+        return dictionary.get();
+    }
+
+    /**
+     * Adds {@code word} to the user overlay, or changes its frequency if already there. The base
+     * dictionary is left alone and segmenting threads are never blocked: they keep the overlay version
+     * they started with and pick up the new one on their next call. Overlay words take precedence over
+     * base words of the same text, and their frequency is counted against the base dictionary's total.
+     */
+    public void addWord(String word, int frequency) {
+        addWords(Collections.singletonMap(word, frequency));
+    }
+
+    /** Adds many words and publishes them together, so readers see all of them or none. */
+    public void addWords(Map<String, Integer> frequencies) {
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            if (entry.getKey().isEmpty()) {
+                throw new IllegalArgumentException("word must not be empty");
+            }
+            if (entry.getValue() == null || entry.getValue() <= 0) {
+                throw new IllegalArgumentException("frequency of \"" + entry.getKey() + "\" must be positive");
+            }
+        }
+        synchronized (overlayLock) {
+            OverlayTrie updated = overlay;
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                updated = updated.put(entry.getKey(), entry.getValue());
+            }
+            overlay = updated;
+        }
+    }
+
+    /** Removes {@code word} from the overlay; base dictionary words cannot be removed. Returns whether it was there. */
+    public boolean removeWord(String word) {
+        synchronized (overlayLock) {
+            OverlayTrie updated = overlay.put(word, 0);
+            if (updated == overlay) {
+                return false;
+            }
+            overlay = updated;
+            return true;
+        }
+    }
+
+    /** Number of words in the overlay. */
+    public int overlaySize() {
+        return overlay.size();
+    }
+
+    /**
+     * Immutable compiled dictionary: the word trie plus per-word log probabilities.
+     * Compile once and share it between segmenters and threads, or {@link #write(Path)} it once
+     * and {@link #map(Path)} it at startup so the arrays are paged in by the OS instead of rebuilt.
+     */
+    public static final class Dictionary {
+        /*
+         * File layout, little-endian so mapped reads need no byte swapping on x86 and ARM:
+         * a 32-byte header (magic, version, words, maxLength, arrayLength, reserved,
+         * unknownLogProbability) then base[arrayLength], check[arrayLength] as ints
+         * and logProbability[words] as doubles.
+         */
+        private static final int MAGIC = 0x43534454; // "CSDT"
+        private static final int VERSION = 1;
+        private static final int HEADER_BYTES = 32;
+
+        private final DoubleArrayTrie trie;
+        /* indexed by trie word index */
+        private final DoubleBuffer logProbability;
+        private final double unknownLogProbability;
+
+        private Dictionary(DoubleArrayTrie trie, DoubleBuffer logProbability, double unknownLogProbability) {
+            this.trie = trie;
+            this.logProbability = logProbability;
+            this.unknownLogProbability = unknownLogProbability;
+        }
+
+        /** Every word gets frequency 1. */
+        public static Dictionary compile(Set<String> words) {
+            Map<String, Integer> frequencies = new HashMap<>();
+            for (String word : words) {
+                frequencies.put(word, 1);
+            }
+            return compile(frequencies);
+        }
+
+        public static Dictionary compile(Map<String, Integer> frequencies) {
+            DoubleArrayTrie trie = DoubleArrayTrie.build(frequencies.keySet());
+            double[] logProbability = new double[trie.size()];
+            long total = 0;
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                if (entry.getValue() == null || entry.getValue() <= 0) {
+                    throw new IllegalArgumentException("frequency of \"" + entry.getKey() + "\" must be positive");
+                }
+                total += entry.getValue();
+            }
+            double logTotal = Math.log(Math.max(total, 1));
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                int index = trie.indexOf(entry.getKey());
+                if (index >= 0) {
+                    logProbability[index] = Math.log(entry.getValue()) - logTotal;
+                }
+            }
+            /* a char missing from the dictionary counts as a word seen once */
+            return new Dictionary(trie, DoubleBuffer.wrap(logProbability), -logTotal);
+        }
+
+        /**
+         * Writes the compiled dictionary to {@code path}. The bytes go to a temporary file in the same
+         * directory which is then renamed over {@code path}, so readers never map a half-written file.
+         */
+        public void write(Path path) throws IOException {
+            IntBuffer base = trie.base();
+            IntBuffer check = trie.check();
+            int arrayLength = base.remaining();
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + arrayLength * 8 + trie.size() * 8).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(trie.size()).putInt(trie.maxLength())
+                    .putInt(arrayLength).putInt(0).putDouble(unknownLogProbability);
+            buffer.asIntBuffer().put(base).put(check);
+            buffer.position(HEADER_BYTES + arrayLength * 8);
+            buffer.asDoubleBuffer().put(logProbability.duplicate());
+            buffer.rewind();
+
+            Path absolute = path.toAbsolutePath();
+            Path temporary = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+            try {
+                try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    channel.force(true);
+                }
+                Files.move(temporary, absolute, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        }
+
+        /**
+         * Maps a file written by {@link #write(Path)} read-only. Nothing is copied onto the heap, and
+         * processes mapping the same file share its pages. The mapping stays valid even if the file is
+         * replaced afterwards; it is released when the returned dictionary is garbage collected.
+         */
+        public static Dictionary map(Path path) throws IOException {
+            MappedByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                if (channel.size() < HEADER_BYTES) {
+                    throw new IOException(path + ": not a dictionary file");
+                }
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException(path + ": not a dictionary file");
+            }
+            if (buffer.getInt(4) != VERSION) {
+                throw new IOException(path + ": unsupported version " + buffer.getInt(4));
+            }
+            int words = buffer.getInt(8);
+            int maxLength = buffer.getInt(12);
+            int arrayLength = buffer.getInt(16);
+            double unknownLogProbability = buffer.getDouble(24);
+            long expected = HEADER_BYTES + arrayLength * 8L + words * 8L;
+            if (words < 0 || maxLength < 0 || arrayLength < Character.MAX_VALUE + 2 || expected != buffer.capacity()) {
+                throw new IOException(path + ": corrupt header, expected " + expected + " bytes, found " + buffer.capacity());
+            }
+
+            IntBuffer base = section(buffer, HEADER_BYTES, arrayLength * 4).asIntBuffer();
+            IntBuffer check = section(buffer, HEADER_BYTES + arrayLength * 4, arrayLength * 4).asIntBuffer();
+            DoubleBuffer logProbability = section(buffer, HEADER_BYTES + arrayLength * 8, words * 8).asDoubleBuffer();
+            return new Dictionary(new DoubleArrayTrie(base, check, words, maxLength), logProbability, unknownLogProbability);
+        }
+
+        private static ByteBuffer section(ByteBuffer buffer, int offset, int length) {
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset).limit(offset + length);
+            return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        public int size() {
+            return trie.size();
+        }
+
+        /* for checks in this package, e.g. DoubleArrayTrieCheck */
+        DoubleArrayTrie trie() {
+            return trie;
+        }
+    }
+
+    /** Receives each token as a half-open [start, end) range of the input. */
+    public interface TokenConsumer {
+        void accept(int start, int end);
     }
 
+    /**
+     * Convenience view: copies every token into a String.
+     * Use {@link #segment(CharSequence, int[])} or {@link #segment(CharSequence, TokenConsumer)}
+     * on large inputs to avoid per-token garbage.
+     */
     public List<String> segment(String sentence) {
         List<String> result = new ArrayList<>();
-        int maxLen = getMaxLen(dict);
+        segment(sentence, (start, end) -> result.add(sentence.substring(start, end)));
+        return result;
+    }
 
-        while (!sentence.isEmpty()) {
-            int endIndex = Math.min(sentence.length(), maxLen);
-            String token = sentence.substring(0, endIndex);
+    /**
+     * Writes the end offset of each token into {@code boundaries} (token i spans
+     * [boundaries[i - 1], boundaries[i]), with an implicit 0 before the first) and returns the token count.
+     * At most one token per char is produced, so {@code boundaries.length >= text.length()} always suffices.
+     */
+    public int segment(CharSequence text, int[] boundaries) {
+        if (boundaries.length < text.length()) {
+            throw new IllegalArgumentException("boundaries needs room for " + text.length() + " tokens, got " + boundaries.length);
+        }
+        int[] count = {0};
+        segment(text, (start, end) -> boundaries[count[0]++] = end);
+        return count[0];
+    }
 
-            while (!dict.contains(token)) {
-                if (token.length() == 1) {
-                    break;
+    public void segment(CharSequence text, TokenConsumer consumer) {
+        Dictionary dictionary = this.dictionary.get();
+        OverlayTrie overlay = this.overlay;
+        if (mode == Mode.MAXIMUM_PROBABILITY) {
+            segmentByProbability(dictionary, overlay, text, consumer);
+            return;
+        }
+        int start = 0;
+
+        while (start < text.length()) {
+            int end = start + nextToken(dictionary, overlay, text, start);
+            consumer.accept(start, end);
+            start = end;
+        }
+    }
+
+    private static int nextToken(Dictionary dictionary, OverlayTrie overlay, CharSequence text, int start) {
+        int length = overlay.isEmpty()
+                ? dictionary.trie.longestPrefix(text, start, text.length())
+                : longestPrefix(dictionary.trie, overlay, text, start, text.length());
+        return length == 0 ? 1 : length;
+    }
+
+    /* walks the base trie and the overlay side by side, so each char is read once for both */
+    private static int longestPrefix(DoubleArrayTrie trie, OverlayTrie overlay, CharSequence text, int from, int to) {
+        int longest = 0;
+        int state = trie.root();
+        OverlayTrie.Node node = overlay.root();
+        for (int i = from; ; i++) {
+            if ((node != null && node.frequency > 0) || (state >= 0 && trie.wordIndex(state) >= 0)) {
+                longest = i - from;
+            }
+            if (i == to || (state < 0 && node == null)) {
+                return longest;
+            }
+            char c = text.charAt(i);
+            if (state >= 0) {
+                state = trie.child(state, c);
+            }
+            if (node != null) {
+                node = node.child(c);
+            }
+        }
+    }
+
+    /* like DoubleArrayTrie.prefixes over both tries, yielding log probabilities; an overlay word shadows the base word */
+    private static int prefixes(Dictionary dictionary, OverlayTrie overlay, CharSequence text, int from, int to,
+            int[] lengths, double[] scores) {
+        DoubleArrayTrie trie = dictionary.trie;
+        int count = 0;
+        int state = trie.root();
+        OverlayTrie.Node node = overlay.root();
+        for (int i = from; ; i++) {
+            if (node != null && node.frequency > 0) {
+                lengths[count] = i - from;
+                scores[count++] = node.logFrequency + dictionary.unknownLogProbability;
+            } else if (state >= 0) {
+                int word = trie.wordIndex(state);
+                if (word >= 0) {
+                    lengths[count] = i - from;
+                    scores[count++] = dictionary.logProbability.get(word);
                 }
-                endIndex--;
-                token = sentence.substring(0, endIndex);
             }
+            if (i == to || (state < 0 && node == null)) {
+                return count;
+            }
+            char c = text.charAt(i);
+            if (state >= 0) {
+                state = trie.child(state, c);
+            }
+            if (node != null) {
+                node = node.child(c);
+            }
+        }
+    }
+
+    /*
+     * Viterbi over the word DAG, right to left: best[i] is the best log probability of text[i, n),
+     * next[i] the end of the first word on that path. Each position's outgoing edges are the
+     * trie's prefix matches, so the DAG is never materialized.
+     */
+    private void segmentByProbability(Dictionary dictionary, OverlayTrie overlay, CharSequence text, TokenConsumer consumer) {
+        int n = text.length();
+        DoubleArrayTrie trie = dictionary.trie;
+        DoubleBuffer logProbability = dictionary.logProbability;
+        Lattice lattice = lattices.get();
+        lattice.ensure(n, Math.max(trie.maxLength(), overlay.maxLength()));
+        double[] best = lattice.best;
+        int[] next = lattice.next;
+        int[] lengths = lattice.lengths;
+        int[] words = lattice.words;
+        double[] scores = lattice.scores;
 
-            result.add(token);
-            sentence = sentence.substring(token.length());
+        best[n] = 0;
+        for (int i = n - 1; i >= 0; i--) {
+            double score = dictionary.unknownLogProbability + best[i + 1];
+            int end = i + 1;
+            if (overlay.isEmpty()) {
+                int matches = trie.prefixes(text, i, n, lengths, words);
+                for (int k = 0; k < matches; k++) {
+                    double candidate = logProbability.get(words[k]) + best[i + lengths[k]];
+                    if (candidate >= score) {
+                        score = candidate;
+                        end = i + lengths[k];
+                    }
+                }
+            } else {
+                int matches = prefixes(dictionary, overlay, text, i, n, lengths, scores);
+                for (int k = 0; k < matches; k++) {
+                    double candidate = scores[k] + best[i + lengths[k]];
+                    if (candidate >= score) {
+                        score = candidate;
+                        end = i + lengths[k];
+                    }
+                }
+            }
+            best[i] = score;
+            next[i] = end;
         }
 
-        return result;
+        for (int start = 0; start < n; start = next[start]) {
+            consumer.accept(start, next[start]);
+        }
     }
 
-    private int getMaxLen(Set<String> dict) {
-        int maxLen = 0;
-        for (String word : dict) {
-            maxLen = Math.max(maxLen, word.length());
+    /* per-thread scratch arrays, grown to the longest sentence seen and reused */
+    private static class Lattice {
+        private double[] best = new double[0];
+        private int[] next = new int[0];
+        private int[] lengths = new int[0];
+        private int[] words = new int[0];
+        private double[] scores = new double[0];
+
+        private void ensure(int length, int maxWordLength) {
+            if (best.length < length + 1) {
+                int capacity = Math.max(length + 1, best.length * 2);
+                best = new double[capacity];
+                next = new int[capacity];
+            }
+            if (lengths.length < maxWordLength) {
+                lengths = new int[maxWordLength];
+                words = new int[maxWordLength];
+                scores = new double[maxWordLength];
+            }
         }
-        return maxLen;
     }
 
     public static void main(String[] args) {
@@ -48,5 +445,401 @@ public class ChineseSegmenter {
         List<String> tokens = segmenter.segment("我爱中国北京天安门");
 
         System.out.println(tokens); // prints [我, 爱, 中国, 北京, 天安门]
+
+        Map<String, Integer> frequencies = new HashMap<>();
+        frequencies.put("结婚", 300);
+        frequencies.put("的", 5000);
+        frequencies.put("和", 3000);
+        frequencies.put("和尚", 40);
+        frequencies.put("尚未", 200);
+        frequencies.put("尚", 30);
+        frequencies.put("未", 100);
+        String ambiguous = "结婚的和尚未结婚的";
+        System.out.println(new ChineseSegmenter(frequencies, Mode.MAXIMUM_MATCHING).segment(ambiguous)); // [结婚, 的, 和尚, 未, 结婚, 的]
+        System.out.println(new ChineseSegmenter(frequencies, Mode.MAXIMUM_PROBABILITY).segment(ambiguous)); // [结婚, 的, 和, 尚未, 结婚, 的]
+
+        segmenter.addWord("中国北京", 5);
+        System.out.println(segmenter.segment("我爱中国北京天安门")); // prints [我, 爱, 中国北京, 天安门]
+    }
+}
+
+/**
+ * Small persistent trie of words added at run time. An update copies only the nodes on the word's
+ * path and returns a new trie, so a reader holding an older version can keep walking it safely.
+ */
+final class OverlayTrie {
+    static final OverlayTrie EMPTY = new OverlayTrie(Node.LEAF, 0, 0);
+
+    private final Node root;
+    private final int words;
+    /* upper bound: removals do not shrink it */
+    private final int maxLength;
+
+    private OverlayTrie(Node root, int words, int maxLength) {
+        this.root = root;
+        this.words = words;
+        this.maxLength = maxLength;
+    }
+
+    /** Returns a trie where {@code word} has {@code frequency}; 0 removes it. Returns this trie if nothing changes. */
+    OverlayTrie put(String word, int frequency) {
+        int previous = frequency(word);
+        if (previous == frequency) {
+            return this;
+        }
+        Node updated = put(root, word, 0, frequency);
+        int count = words + (previous == 0 ? 1 : 0) - (frequency == 0 ? 1 : 0);
+        return new OverlayTrie(updated == null ? Node.LEAF : updated, count, Math.max(maxLength, frequency == 0 ? 0 : word.length()));
+    }
+
+    int frequency(CharSequence word) {
+        Node node = root;
+        for (int i = 0; i < word.length() && node != null; i++) {
+            node = node.child(word.charAt(i));
+        }
+        return node == null ? 0 : node.frequency;
+    }
+
+    Node root() {
+        return root;
+    }
+
+    boolean isEmpty() {
+        return words == 0;
+    }
+
+    int size() {
+        return words;
+    }
+
+    int maxLength() {
+        return maxLength;
+    }
+
+    /* returns the replacement for node, or null when it would hold no word */
+    private static Node put(Node node, String word, int depth, int frequency) {
+        if (depth == word.length()) {
+            return node.labels.length == 0 && frequency == 0 ? null : new Node(node.labels, node.children, frequency);
+        }
+        char c = word.charAt(depth);
+        int index = Arrays.binarySearch(node.labels, c);
+        Node child = put(index >= 0 ? node.children[index] : Node.LEAF, word, depth + 1, frequency);
+
+        char[] labels;
+        Node[] children;
+        if (index >= 0 && child != null) {
+            labels = node.labels;
+            children = node.children.clone();
+            children[index] = child;
+        } else if (index >= 0) {
+            labels = new char[node.labels.length - 1];
+            children = new Node[labels.length];
+            System.arraycopy(node.labels, 0, labels, 0, index);
+            System.arraycopy(node.labels, index + 1, labels, index, labels.length - index);
+            System.arraycopy(node.children, 0, children, 0, index);
+            System.arraycopy(node.children, index + 1, children, index, labels.length - index);
+        } else {
+            int insertion = -index - 1;
+            labels = new char[node.labels.length + 1];
+            children = new Node[labels.length];
+            System.arraycopy(node.labels, 0, labels, 0, insertion);
+            System.arraycopy(node.labels, insertion, labels, insertion + 1, node.labels.length - insertion);
+            System.arraycopy(node.children, 0, children, 0, insertion);
+            System.arraycopy(node.children, insertion, children, insertion + 1, node.labels.length - insertion);
+            labels[insertion] = c;
+            children[insertion] = child;
+        }
+        return labels.length == 0 && node.frequency == 0 ? null : new Node(labels, children, node.frequency);
+    }
+
+    /* immutable once published; children are kept sorted by label for binary search */
+    static final class Node {
+        private static final Node LEAF = new Node(new char[0], new Node[0], 0);
+
+        private final char[] labels;
+        private final Node[] children;
+        final int frequency;
+        final double logFrequency;
+
+        private Node(char[] labels, Node[] children, int frequency) {
+            this.labels = labels;
+            this.children = children;
+            this.frequency = frequency;
+            this.logFrequency = frequency > 0 ? Math.log(frequency) : Double.NEGATIVE_INFINITY;
+        }
+
+        Node child(char c) {
+            int index = Arrays.binarySearch(labels, c);
+            return index >= 0 ? children[index] : null;
+        }
+    }
+}
+
+/**
+ * Double-array trie (Aoe's layout, darts-style construction) over UTF-16 chars.
+ * A child of state s on char c lives at base[s] + c + 1 and is valid iff check[child] == base[s];
+ * code 0 marks end of word, and base of that terminal slot stores -(wordIndex + 1).
+ * The two arrays are read through IntBuffers so the same lookups run on heap arrays or a mapped file.
+ */
+class DoubleArrayTrie {
+    private final IntBuffer base;
+    private final IntBuffer check;
+    private final int words;
+    private final int maxLength;
+
+    DoubleArrayTrie(IntBuffer base, IntBuffer check, int words, int maxLength) {
+        this.base = base;
+        this.check = check;
+        this.words = words;
+        this.maxLength = maxLength;
+    }
+
+    public static DoubleArrayTrie build(Collection<String> words) {
+        TreeSet<String> sorted = new TreeSet<>();
+        int maxLength = 0;
+        for (String word : words) {
+            if (!word.isEmpty()) {
+                sorted.add(word);
+                maxLength = Math.max(maxLength, word.length());
+            }
+        }
+        Builder builder = new Builder(sorted.toArray(new String[0]));
+        builder.build();
+        /* any state plus any char code must stay in bounds during lookup */
+        int length = builder.size + Character.MAX_VALUE + 2;
+        return new DoubleArrayTrie(IntBuffer.wrap(Arrays.copyOf(builder.base, length)),
+                IntBuffer.wrap(Arrays.copyOf(builder.check, length)), sorted.size(), maxLength);
+    }
+
+    /** Checks that every word of {@code sorted} resolves to its rank; a lost word is a builder bug. */
+    void verify(Collection<String> sorted) {
+        int rank = 0;
+        for (String word : sorted) {
+            if (indexOf(word) != rank) {
+                throw new IllegalStateException("double-array trie lost \"" + word + "\" (rank " + rank + ")");
+            }
+            rank++;
+        }
+    }
+
+    /**
+     * Length of the longest dictionary word that starts at {@code from}, or 0 if none.
+     * Walks the text once and allocates nothing.
+     */
+    public int longestPrefix(CharSequence text, int from, int to) {
+        int longest = 0;
+        int b = base.get(0);
+        for (int i = from; i < to; i++) {
+            if (check.get(b) == b && base.get(b) < 0) {
+                longest = i - from;
+            }
+            int p = b + text.charAt(i) + 1;
+            if (check.get(p) != b) {
+                return longest;
+            }
+            b = base.get(p);
+        }
+        if (check.get(b) == b && base.get(b) < 0) {
+            longest = to - from;
+        }
+        return longest;
+    }
+
+    /**
+     * All dictionary words starting at {@code from}, shortest first: writes their lengths and word
+     * indexes into the given arrays (which need {@link #maxLength()} slots) and returns how many matched.
+     */
+    public int prefixes(CharSequence text, int from, int to, int[] lengths, int[] indexes) {
+        int count = 0;
+        int b = base.get(0);
+        for (int i = from; ; i++) {
+            if (check.get(b) == b && base.get(b) < 0) {
+                lengths[count] = i - from;
+                indexes[count++] = -base.get(b) - 1;
+            }
+            if (i == to) {
+                return count;
+            }
+            int p = b + text.charAt(i) + 1;
+            if (check.get(p) != b) {
+                return count;
+            }
+            b = base.get(p);
+        }
+    }
+
+    /** Word index of {@code word} (its rank in sorted order), or -1 if absent. */
+    public int indexOf(CharSequence word) {
+        if (word.length() == 0) {
+            return -1;
+        }
+        int b = base.get(0);
+        for (int i = 0; i < word.length(); i++) {
+            int p = b + word.charAt(i) + 1;
+            if (check.get(p) != b) {
+                return -1;
+            }
+            b = base.get(p);
+        }
+        return check.get(b) == b && base.get(b) < 0 ? -base.get(b) - 1 : -1;
+    }
+
+    /** State for stepping through the trie one char at a time with {@link #child(int, char)}. */
+    int root() {
+        return base.get(0);
+    }
+
+    /** State reached from {@code state} on {@code c}, or -1 if no word continues that way. */
+    int child(int state, char c) {
+        int p = state + c + 1;
+        return check.get(p) == state ? base.get(p) : -1;
+    }
+
+    /** Word index if a word ends at {@code state}, otherwise -1. */
+    int wordIndex(int state) {
+        return check.get(state) == state && base.get(state) < 0 ? -base.get(state) - 1 : -1;
+    }
+
+    /** Length of the longest word. */
+    public int maxLength() {
+        return maxLength;
+    }
+
+    /** Number of distinct words. */
+    public int size() {
+        return words;
+    }
+
+    IntBuffer base() {
+        return base.duplicate();
+    }
+
+    IntBuffer check() {
+        return check.duplicate();
+    }
+
+    private static class Builder {
+        private final String[] keys;
+        private int[] base;
+        private int[] check;
+        private boolean[] used;
+        private int size;
+        private int nextCheckPos;
+
+        private Builder(String[] keys) {
+            this.keys = keys;
+        }
+
+        private void build() {
+            resize(Math.max(1024, keys.length * 4));
+            base[0] = 1;
+            if (keys.length > 0) {
+                Node root = new Node(0, 0, 0, keys.length);
+                /* insert may resize and replace base, so read the field only after it returns */
+                int begin = insert(fetch(root));
+                base[0] = begin;
+            }
+        }
+
+        private void resize(int capacity) {
+            base = base == null ? new int[capacity] : Arrays.copyOf(base, capacity);
+            check = check == null ? new int[capacity] : Arrays.copyOf(check, capacity);
+            used = used == null ? new boolean[capacity] : Arrays.copyOf(used, capacity);
+        }
+
+        private List<Node> fetch(Node parent) {
+            List<Node> siblings = new ArrayList<>();
+            int previous = -1;
+            for (int i = parent.left; i < parent.right; i++) {
+                String key = keys[i];
+                if (key.length() < parent.depth) {
+                    continue;
+                }
+                int code = key.length() == parent.depth ? 0 : key.charAt(parent.depth) + 1;
+                if (code != previous) {
+                    if (!siblings.isEmpty()) {
+                        siblings.get(siblings.size() - 1).right = i;
+                    }
+                    siblings.add(new Node(code, parent.depth + 1, i, parent.right));
+                    previous = code;
+                }
+            }
+            return siblings;
+        }
+
+        private int insert(List<Node> siblings) {
+            int first = siblings.get(0).code;
+            int last = siblings.get(siblings.size() - 1).code;
+            int position = Math.max(first + 1, nextCheckPos) - 1;
+            int nonZero = 0;
+            boolean firstFree = true;
+            int begin;
+
+            while (true) {
+                position++;
+                if (position >= base.length) {
+                    resize(Math.max(base.length * 2, position + 1));
+                }
+                if (check[position] != 0) {
+                    nonZero++;
+                    continue;
+                }
+                if (firstFree) {
+                    nextCheckPos = position;
+                    firstFree = false;
+                }
+                begin = position - first;
+                if (begin + last >= base.length) {
+                    resize(Math.max(base.length * 2, begin + last + Character.MAX_VALUE + 2));
+                }
+                if (used[begin]) {
+                    continue;
+                }
+                boolean fits = true;
+                for (int i = 1; i < siblings.size(); i++) {
+                    if (check[begin + siblings.get(i).code] != 0) {
+                        fits = false;
+                        break;
+                    }
+                }
+                if (fits) {
+                    break;
+                }
+            }
+
+            /* skip densely packed regions on later searches */
+            if (1.0 * nonZero / (position - nextCheckPos + 1) >= 0.95) {
+                nextCheckPos = position;
+            }
+            used[begin] = true;
+            size = Math.max(size, begin + last + 1);
+
+            for (Node sibling : siblings) {
+                check[begin + sibling.code] = begin;
+            }
+            for (Node sibling : siblings) {
+                if (sibling.code == 0) {
+                    base[begin] = -sibling.left - 1;
+                    continue;
+                }
+                int child = insert(fetch(sibling));
+                base[begin + sibling.code] = child;
+            }
+            return begin;
+        }
+    }
+
+    private static class Node {
+        private final int code;
+        private final int depth;
+        private final int left;
+        private int right;
+
+        private Node(int code, int depth, int left, int right) {
+            this.code = code;
+            this.depth = depth;
+            this.left = left;
+            this.right = right;
+        }
     }
 }
@@ -0,0 +1,55 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Regression check for {@link DoubleArrayTrie}: the builder grows its arrays mid-insert, and every word
+ * must survive that, both in the heap trie and after a round trip through the mapped file format.
+ * A single ASCII-led word, ASCII-led mixed words and a large CJK dictionary all force a resize.
+ * Exits with an {@link IllegalStateException} from {@link DoubleArrayTrie#verify} on the first lost word.
+ */
+class DoubleArrayTrieCheck {
+
+    public static void main(String[] args) throws IOException {
+        Random random = new Random(20230101L);
+        List<Set<String>> dictionaries = new ArrayList<>();
+        dictionaries.add(Collections.singleton("b中"));
+        dictionaries.add(randomWords(random, 2_000, 2));
+        dictionaries.add(randomWords(random, 300_000, 100));
+        for (Set<String> words : dictionaries) {
+            TreeSet<String> sorted = new TreeSet<>(words);
+            ChineseSegmenter.Dictionary compiled = ChineseSegmenter.Dictionary.compile(words);
+            compiled.trie().verify(sorted);
+            Path file = Files.createTempFile("dictionary", ".dat");
+            try {
+                compiled.write(file);
+                ChineseSegmenter.Dictionary.map(file).trie().verify(sorted);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+            System.out.println(words.size() + " words found after build and map");
+        }
+    }
+
+    /* CJK words of 1-4 chars, one in {@code asciiLedEvery} starting with an ASCII letter */
+    private static Set<String> randomWords(Random random, int count, int asciiLedEvery) {
+        Set<String> words = new TreeSet<>();
+        while (words.size() < count) {
+            StringBuilder word = new StringBuilder();
+            if (random.nextInt(asciiLedEvery) == 0) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            for (int i = 1 + random.nextInt(4); i > 0; i--) {
+                word.append((char) (0x4E00 + random.nextInt(0x5200)));
+            }
+            words.add(word.toString());
+        }
+        return words;
+    }
+}
@@ -1,31 +1,255 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
 public class LinearRegression {
-    private double slope;
-    private double intercept;
+    /* points per two-pass block: small enough that the second pass re-reads x and y from cache */
+    private static final int BLOCK = 4096;
+    /* below this many points a fork costs more than it saves */
+    private static final int PARALLEL_THRESHOLD = 1 << 17;
 
-    public void fit(double[] x, double[] y) {
-        double sumX = 0;
-        double sumY = 0;
-        double sumXY = 0;
-        double sumXX = 0;
-        int n = x.length;
+    /*
+     * Running co-moments (Welford): the means, sum of squared x deviations and sum of x*y
+     * co-deviations. They stay accurate where raw sums like sumXX cancel catastrophically,
+     * and two of them combine exactly, so partial fits can be merged in any order.
+     */
+    private long count;
+    private double meanX;
+    private double meanY;
+    private double m2X;
+    private double cXY;
 
-        for (int i = 0; i < n; i++) {
-            sumX += x[i];
-            sumY += y[i];
-            sumXY += x[i] * y[i];
-            sumXX += x[i] * x[i];
+    /** Fits on the whole dataset, discarding anything accumulated before. */
+    public void fit(double[] x, double[] y) {
+        if (x.length != y.length) {
+            throw new IllegalArgumentException("x and y must have the same length, got " + x.length + " and " + y.length);
         }
+        reset();
+        merge(blocks(x, y, 0, x.length));
+        if (m2X == 0) {
+            throw new IllegalArgumentException("Cannot compute linear regression with a constant input variable.");
+        }
+    }
 
-        double denom = n * sumXX - sumX * sumX;
-        if (denom == 0) {
+    public void fitParallel(double[] x, double[] y) {
+        fitParallel(x, y, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same result as {@link #fit(double[], double[])} up to rounding, computed on {@code pool}: the arrays are
+     * split in halves recursively, each leaf fits its range, and the partial fits are merged back up the
+     * same tree, so the combine is pairwise and its rounding error grows with log(n) rather than n.
+     */
+    public void fitParallel(double[] x, double[] y, ForkJoinPool pool) {
+        if (x.length != y.length) {
+            throw new IllegalArgumentException("x and y must have the same length, got " + x.length + " and " + y.length);
+        }
+        reset();
+        merge(pool.invoke(new FitTask(x, y, 0, x.length)));
+        if (m2X == 0) {
             throw new IllegalArgumentException("Cannot compute linear regression with a constant input variable.");
         }
-        slope = (n * sumXY - sumX * sumY) / denom;
-        intercept = (sumY - slope * sumX) / n;
+    }
+
+    /** Adds one point in O(1) time and memory. */
+    public void update(double x, double y) {
+        count++;
+        double dx = x - meanX;
+        meanX += dx / count;
+        meanY += (y - meanY) / count;
+        m2X += dx * (x - meanX);
+        cXY += dx * (y - meanY);
+    }
+
+    /**
+     * Takes back a point previously passed to {@link #update(double, double)}, in O(1): the running
+     * sums are invertible, which is what lets a sliding window drop its oldest point.
+     * Removing points that were never added leaves the fit meaningless.
+     */
+    public void remove(double x, double y) {
+        if (count <= 1) {
+            reset();
+            return;
+        }
+        double ex = x - meanX;
+        double ey = y - meanY;
+        long n = count - 1;
+        double previousMeanX = meanX - ex / n;
+        double dx = x - previousMeanX;
+        m2X -= dx * ex;
+        cXY -= dx * ey;
+        meanX = previousMeanX;
+        meanY -= ey / n;
+        count = n;
+    }
+
+    /**
+     * Folds another accumulator into this one in O(1), as if its points had been passed to
+     * {@link #update(double, double)}. Lets each thread or node fit its own share and combine at the end.
+     * Not thread-safe: give every thread its own instance and merge them afterwards.
+     */
+    public void merge(LinearRegression other) {
+        if (other.count == 0) {
+            return;
+        }
+        if (count == 0) {
+            count = other.count;
+            meanX = other.meanX;
+            meanY = other.meanY;
+            m2X = other.m2X;
+            cXY = other.cXY;
+            return;
+        }
+        long n = count + other.count;
+        double dx = other.meanX - meanX;
+        double dy = other.meanY - meanY;
+        double weight = (double) count * other.count / n;
+        m2X += other.m2X + dx * dx * weight;
+        cXY += other.cXY + dx * dy * weight;
+        meanX += dx * other.count / n;
+        meanY += dy * other.count / n;
+        count = n;
+    }
+
+    private static LinearRegression blocks(double[] x, double[] y, int from, int to) {
+        LinearRegression result = new LinearRegression();
+        for (int start = from; start < to; start += BLOCK) {
+            result.merge(block(x, y, start, Math.min(start + BLOCK, to)));
+        }
+        return result;
+    }
+
+    /*
+     * Exact-mean two-pass fit of [from, to): first the block means, then the centered co-moments,
+     * minus the usual correction for rounding in the mean. Every sum is split over four independent
+     * accumulators so the adds do not wait on each other and the JIT can keep them in vector registers.
+     */
+    private static LinearRegression block(double[] x, double[] y, int from, int to) {
+        int n = to - from;
+        double sumX0 = 0, sumX1 = 0, sumX2 = 0, sumX3 = 0;
+        double sumY0 = 0, sumY1 = 0, sumY2 = 0, sumY3 = 0;
+        int i = from;
+        for (; i + 3 < to; i += 4) {
+            sumX0 += x[i];
+            sumX1 += x[i + 1];
+            sumX2 += x[i + 2];
+            sumX3 += x[i + 3];
+            sumY0 += y[i];
+            sumY1 += y[i + 1];
+            sumY2 += y[i + 2];
+            sumY3 += y[i + 3];
+        }
+        for (; i < to; i++) {
+            sumX0 += x[i];
+            sumY0 += y[i];
+        }
+        double meanX = (sumX0 + sumX1 + sumX2 + sumX3) / n;
+        double meanY = (sumY0 + sumY1 + sumY2 + sumY3) / n;
+
+        double dX0 = 0, dX1 = 0, dX2 = 0, dX3 = 0;
+        double dY0 = 0, dY1 = 0, dY2 = 0, dY3 = 0;
+        double xx0 = 0, xx1 = 0, xx2 = 0, xx3 = 0;
+        double xy0 = 0, xy1 = 0, xy2 = 0, xy3 = 0;
+        i = from;
+        for (; i + 3 < to; i += 4) {
+            double dx0 = x[i] - meanX;
+            double dx1 = x[i + 1] - meanX;
+            double dx2 = x[i + 2] - meanX;
+            double dx3 = x[i + 3] - meanX;
+            double dy0 = y[i] - meanY;
+            double dy1 = y[i + 1] - meanY;
+            double dy2 = y[i + 2] - meanY;
+            double dy3 = y[i + 3] - meanY;
+            dX0 += dx0;
+            dX1 += dx1;
+            dX2 += dx2;
+            dX3 += dx3;
+            dY0 += dy0;
+            dY1 += dy1;
+            dY2 += dy2;
+            dY3 += dy3;
+            xx0 += dx0 * dx0;
+            xx1 += dx1 * dx1;
+            xx2 += dx2 * dx2;
+            xx3 += dx3 * dx3;
+            xy0 += dx0 * dy0;
+            xy1 += dx1 * dy1;
+            xy2 += dx2 * dy2;
+            xy3 += dx3 * dy3;
+        }
+        for (; i < to; i++) {
+            double dx = x[i] - meanX;
+            double dy = y[i] - meanY;
+            dX0 += dx;
+            dY0 += dy;
+            xx0 += dx * dx;
+            xy0 += dx * dy;
+        }
+        double deviationX = dX0 + dX1 + dX2 + dX3;
+        double deviationY = dY0 + dY1 + dY2 + dY3;
+
+        LinearRegression result = new LinearRegression();
+        result.count = n;
+        result.meanX = meanX + deviationX / n;
+        result.meanY = meanY + deviationY / n;
+        result.m2X = xx0 + xx1 + xx2 + xx3 - deviationX * deviationX / n;
+        result.cXY = xy0 + xy1 + xy2 + xy3 - deviationX * deviationY / n;
+        return result;
+    }
+
+    private static class FitTask extends RecursiveTask<LinearRegression> {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] x;
+        private final double[] y;
+        private final int from;
+        private final int to;
+
+        private FitTask(double[] x, double[] y, int from, int to) {
+            this.x = x;
+            this.y = y;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected LinearRegression compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                return blocks(x, y, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            FitTask right = new FitTask(x, y, middle, to);
+            right.fork();
+            LinearRegression left = new FitTask(x, y, from, middle).compute();
+            left.merge(right.join());
+            return left;
+        }
+    }
+
+    public void reset() {
+        count = 0;
+        meanX = 0;
+        meanY = 0;
+        m2X = 0;
+        cXY = 0;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double slope() {
+        if (m2X == 0) {
+            throw new IllegalStateException("Cannot compute linear regression with a constant input variable.");
+        }
+        return cXY / m2X;
+    }
+
+    public double intercept() {
+        return meanY - slope() * meanX;
     }
 
     public double predict(double x) {
-        return slope * x + intercept;
+        return slope() * x + intercept();
     }
 
     public static void main(String[] args) {
@@ -35,8 +259,16 @@ public class LinearRegression {
         LinearRegression lr = new LinearRegression();
         lr.fit(x, y);
 
-        System.out.println("Slope: " + lr.slope);
-        System.out.println("Intercept: " + lr.intercept);
+        System.out.println("Slope: " + lr.slope());
+        System.out.println("Intercept: " + lr.intercept());
         System.out.println("Prediction for x=6: " + lr.predict(6));
+
+        LinearRegression left = new LinearRegression();
+        LinearRegression right = new LinearRegression();
+        for (int i = 0; i < x.length; i++) {
+            (i < 2 ? left : right).update(x[i], y[i]);
+        }
+        left.merge(right);
+        System.out.println("Merged slope: " + left.slope() + ", intercept: " + left.intercept()); // same as above
     }
 }
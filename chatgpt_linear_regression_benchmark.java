@@ -0,0 +1,107 @@
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares the ways of fitting {@link LinearRegression} on large arrays: the original single-chain
+ * raw-sum loop, point-by-point {@code update}, the blocked {@code fit} and the ForkJoin {@code fitParallel}.
+ * Prints throughput and the relative slope error against an exact BigDecimal reference.
+ * Usage: <code>LinearRegressionBenchmark [points] [rounds]</code>
+ */
+public class LinearRegressionBenchmark {
+    private static final long SEED = 20230101L;
+
+    public static void main(String[] args) {
+        int points = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        /* a large offset on x is where the raw sums lose precision */
+        Random random = new Random(SEED);
+        double[] x = new double[points];
+        double[] y = new double[points];
+        for (int i = 0; i < points; i++) {
+            x[i] = 1e6 + random.nextDouble() * 100;
+            y[i] = 3.5 * x[i] - 42 + random.nextGaussian();
+        }
+        double exact = exactSlope(x, y);
+
+        Map<String, Fitter> fitters = new LinkedHashMap<>();
+        fitters.put("raw sums", LinearRegressionBenchmark::rawSums);
+        fitters.put("update", (xs, ys) -> {
+            LinearRegression lr = new LinearRegression();
+            for (int i = 0; i < xs.length; i++) {
+                lr.update(xs[i], ys[i]);
+            }
+            return lr.slope();
+        });
+        fitters.put("fit", (xs, ys) -> {
+            LinearRegression lr = new LinearRegression();
+            lr.fit(xs, ys);
+            return lr.slope();
+        });
+        fitters.put("fitParallel", (xs, ys) -> {
+            LinearRegression lr = new LinearRegression();
+            lr.fitParallel(xs, ys);
+            return lr.slope();
+        });
+
+        System.out.println(String.format("%d points, %d cores", points, Runtime.getRuntime().availableProcessors()));
+        System.out.println(String.format("%-12s %14s %14s", "method", "Mpoints/s", "rel. error"));
+        for (Map.Entry<String, Fitter> entry : fitters.entrySet()) {
+            Fitter fitter = entry.getValue();
+            double slope = fitter.fit(x, y);
+            for (int i = 1; i < rounds; i++) {
+                fitter.fit(x, y);
+            }
+            long begin = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                slope = fitter.fit(x, y);
+            }
+            long elapsed = System.nanoTime() - begin;
+            System.out.println(String.format("%-12s %14.1f %14.3e", entry.getKey(),
+                    (double) points * rounds / elapsed * 1e3, Math.abs(slope - exact) / Math.abs(exact)));
+        }
+    }
+
+    /* the fit before the co-moment rewrite, kept as the baseline */
+    private static double rawSums(double[] x, double[] y) {
+        double sumX = 0;
+        double sumY = 0;
+        double sumXY = 0;
+        double sumXX = 0;
+        int n = x.length;
+
+        for (int i = 0; i < n; i++) {
+            sumX += x[i];
+            sumY += y[i];
+            sumXY += x[i] * y[i];
+            sumXX += x[i] * x[i];
+        }
+        return (n * sumXY - sumX * sumY) / (n * sumXX - sumX * sumX);
+    }
+
+    private static double exactSlope(double[] x, double[] y) {
+        BigDecimal sumX = BigDecimal.ZERO;
+        BigDecimal sumY = BigDecimal.ZERO;
+        BigDecimal sumXY = BigDecimal.ZERO;
+        BigDecimal sumXX = BigDecimal.ZERO;
+        for (int i = 0; i < x.length; i++) {
+            BigDecimal xi = new BigDecimal(x[i]);
+            BigDecimal yi = new BigDecimal(y[i]);
+            sumX = sumX.add(xi);
+            sumY = sumY.add(yi);
+            sumXY = sumXY.add(xi.multiply(yi));
+            sumXX = sumXX.add(xi.multiply(xi));
+        }
+        BigDecimal n = BigDecimal.valueOf(x.length);
+        BigDecimal numerator = n.multiply(sumXY).subtract(sumX.multiply(sumY));
+        BigDecimal denominator = n.multiply(sumXX).subtract(sumX.multiply(sumX));
+        return numerator.divide(denominator, MathContext.DECIMAL64).doubleValue();
+    }
+
+    private interface Fitter {
+        double fit(double[] x, double[] y);
+    }
+}
@@ -0,0 +1,105 @@
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Linear regression where older points count less: every update scales the weight of all earlier points
+ * by {@code decay}, so a point's influence halves every {@code halfLife} updates. Keeps only the weighted
+ * co-moments, so it needs no buffer and updates in O(1).<br/>
+ * One thread writes; any number of threads may read at the same time without blocking it,
+ * as in {@link SlidingWindowRegression}.
+ */
+public class DecayedRegression {
+    private final double decay;
+    private final StampedLock lock = new StampedLock();
+    /* weighted Welford co-moments; weight is the decayed count of points seen */
+    private double weight;
+    private double meanX;
+    private double meanY;
+    private double m2X;
+    private double cXY;
+
+    /** @param halfLife number of updates after which a point's weight has halved */
+    public DecayedRegression(double halfLife) {
+        if (!(halfLife > 0)) {
+            throw new IllegalArgumentException("halfLife must be positive, got " + halfLife);
+        }
+        this.decay = Math.pow(0.5, 1 / halfLife);
+    }
+
+    public void update(double x, double y) {
+        long stamp = lock.writeLock();
+        try {
+            weight = weight * decay + 1;
+            double dx = x - meanX;
+            meanX += dx / weight;
+            meanY += (y - meanY) / weight;
+            m2X = m2X * decay + dx * (x - meanX);
+            cXY = cXY * decay + dx * (y - meanY);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            weight = 0;
+            meanX = 0;
+            meanY = 0;
+            m2X = 0;
+            cXY = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public double slope() {
+        double[] state = read();
+        return slope(state);
+    }
+
+    public double intercept() {
+        double[] state = read();
+        return state[1] - slope(state) * state[0];
+    }
+
+    public double predict(double x) {
+        double[] state = read();
+        double slope = slope(state);
+        return slope * x + state[1] - slope * state[0];
+    }
+
+    /** Effective number of points: the sum of their current weights. */
+    public double weight() {
+        return read()[4];
+    }
+
+    private static double slope(double[] state) {
+        if (state[2] == 0) {
+            throw new IllegalStateException("Cannot compute linear regression with a constant input variable.");
+        }
+        return state[3] / state[2];
+    }
+
+    /* meanX, meanY, m2X, cXY, weight from one update */
+    private double[] read() {
+        long stamp = lock.tryOptimisticRead();
+        double[] state = {meanX, meanY, m2X, cXY, weight};
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                state = new double[] {meanX, meanY, m2X, cXY, weight};
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return state;
+    }
+
+    public static void main(String[] args) {
+        DecayedRegression trend = new DecayedRegression(20);
+        for (int t = 0; t < 600; t++) {
+            trend.update(t, t < 300 ? 2.0 * t : 1200 - 2.0 * t);
+        }
+        System.out.println("Decayed slope: " + trend.slope() + ", effective points: " + trend.weight()); // close to -2.0
+    }
+}
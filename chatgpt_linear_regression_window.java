@@ -0,0 +1,127 @@
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Linear regression over the last {@code capacity} points. Each {@link #update(double, double)} adds the new
+ * point and takes back the oldest one from the running co-moments in O(1); the points themselves live in a
+ * primitive ring buffer, so memory is fixed at construction.<br/>
+ * One thread writes; any number of threads may read at the same time. Readers try an optimistic
+ * {@link StampedLock} read first and fall back to a read lock only when a write overlapped it, so an
+ * uncontended read never blocks the writer and every read sees the sums of one whole update.
+ */
+public class SlidingWindowRegression {
+    private final double[] xs;
+    private final double[] ys;
+    private final LinearRegression moments = new LinearRegression();
+    private final StampedLock lock = new StampedLock();
+    /* next slot to write; once the window is full it is also the oldest point */
+    private int head;
+    private int size;
+    /* evictions since the sums were last rebuilt from the buffer */
+    private int evictions;
+
+    public SlidingWindowRegression(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("capacity must be at least 2, got " + capacity);
+        }
+        this.xs = new double[capacity];
+        this.ys = new double[capacity];
+    }
+
+    public void update(double x, double y) {
+        long stamp = lock.writeLock();
+        try {
+            if (size == xs.length) {
+                moments.remove(xs[head], ys[head]);
+                evictions++;
+            } else {
+                size++;
+            }
+            xs[head] = x;
+            ys[head] = y;
+            moments.update(x, y);
+            head = head + 1 == xs.length ? 0 : head + 1;
+            /* removals accumulate rounding; rebuilding once per window length keeps it bounded at O(1) amortized */
+            if (evictions == xs.length) {
+                rebuild();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            moments.reset();
+            head = 0;
+            size = 0;
+            evictions = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** A consistent copy of the current window's fit, safe to use from any thread. */
+    public LinearRegression snapshot() {
+        long stamp = lock.tryOptimisticRead();
+        LinearRegression copy = new LinearRegression();
+        copy.merge(moments);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                copy.reset();
+                copy.merge(moments);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return copy;
+    }
+
+    public double slope() {
+        return snapshot().slope();
+    }
+
+    public double intercept() {
+        return snapshot().intercept();
+    }
+
+    public double predict(double x) {
+        return snapshot().predict(x);
+    }
+
+    public int size() {
+        long stamp = lock.tryOptimisticRead();
+        int current = size;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                current = size;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return current;
+    }
+
+    public int capacity() {
+        return xs.length;
+    }
+
+    private void rebuild() {
+        moments.reset();
+        for (int i = 0; i < size; i++) {
+            moments.update(xs[i], ys[i]);
+        }
+        evictions = 0;
+    }
+
+    public static void main(String[] args) {
+        SlidingWindowRegression window = new SlidingWindowRegression(60);
+        for (int t = 0; t < 600; t++) {
+            /* the trend flips at t = 300; the window follows it within 60 points */
+            window.update(t, t < 300 ? 2.0 * t : 1200 - 2.0 * t);
+        }
+        System.out.println("Slope over the last " + window.size() + " points: " + window.slope()); // -2.0
+    }
+}
@@ -0,0 +1,252 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Least squares over many features: y = intercept + coefficients . x.
+ * The design matrix is one flat row-major array, row i being {@code rows[i * features .. (i + 1) * features)},
+ * so millions of rows cost no per-row objects. Fitting solves the normal equations of the centered data
+ * with a Cholesky factorization; an optional ridge term is added to the diagonal, leaving the intercept unpenalized.
+ */
+public class MultipleLinearRegression {
+    /* rows per leaf of the parallel passes */
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    private final double ridge;
+    private int features;
+    private double[] coefficients;
+    private double intercept;
+
+    public MultipleLinearRegression() {
+        this(0);
+    }
+
+    public MultipleLinearRegression(double ridge) {
+        if (ridge < 0 || Double.isNaN(ridge)) {
+            throw new IllegalArgumentException("ridge must be non-negative, got " + ridge);
+        }
+        this.ridge = ridge;
+    }
+
+    public void fit(double[] rows, int features, double[] y) {
+        fit(rows, features, y, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Fits on {@code rows}, using {@code pool} for the two passes over the data (column means, then X^T X and
+     * X^T y of the centered rows). Each leaf accumulates its own partial matrices, which are added back
+     * up the split tree.
+     */
+    public void fit(double[] rows, int features, double[] y, ForkJoinPool pool) {
+        if (features <= 0) {
+            throw new IllegalArgumentException("features must be positive, got " + features);
+        }
+        if (rows.length != (long) y.length * features) {
+            throw new IllegalArgumentException("rows must hold " + y.length + " x " + features + " values, got " + rows.length);
+        }
+        if (y.length == 0) {
+            throw new IllegalArgumentException("Cannot compute linear regression without data.");
+        }
+        int n = y.length;
+
+        double[] sums = pool.invoke(new Pass(rows, features, y, null, 0, n));
+        double[] means = new double[features + 1];
+        for (int j = 0; j <= features; j++) {
+            means[j] = sums[j] / n;
+        }
+        /* upper triangle of X^T X, row-major p x p, followed by X^T y */
+        double[] moments = pool.invoke(new Pass(rows, features, y, means, 0, n));
+        for (int j = 0; j < features; j++) {
+            moments[j * features + j] += ridge;
+        }
+
+        double[] beta = solve(moments, features);
+        double b = means[features];
+        for (int j = 0; j < features; j++) {
+            b -= beta[j] * means[j];
+        }
+        this.features = features;
+        this.coefficients = beta;
+        this.intercept = b;
+    }
+
+    public double predict(double[] row) {
+        checkFitted();
+        if (row.length != features) {
+            throw new IllegalArgumentException("row must hold " + features + " values, got " + row.length);
+        }
+        double value = intercept;
+        for (int j = 0; j < features; j++) {
+            value += coefficients[j] * row[j];
+        }
+        return value;
+    }
+
+    /** Scores every row of the flat row-major {@code rows} into {@code out}; allocates nothing. */
+    public void predict(double[] rows, double[] out) {
+        checkFitted();
+        if (rows.length % features != 0) {
+            throw new IllegalArgumentException("rows length " + rows.length + " is not a multiple of " + features);
+        }
+        int n = rows.length / features;
+        if (out.length < n) {
+            throw new IllegalArgumentException("out needs room for " + n + " predictions, got " + out.length);
+        }
+        double[] beta = coefficients;
+        for (int i = 0, offset = 0; i < n; i++, offset += features) {
+            double value = intercept;
+            for (int j = 0; j < features; j++) {
+                value += beta[j] * rows[offset + j];
+            }
+            out[i] = value;
+        }
+    }
+
+    public double[] coefficients() {
+        checkFitted();
+        return coefficients.clone();
+    }
+
+    public double intercept() {
+        checkFitted();
+        return intercept;
+    }
+
+    private void checkFitted() {
+        if (coefficients == null) {
+            throw new IllegalStateException("fit has not been called");
+        }
+    }
+
+    /* Cholesky A = L L^T on the upper triangle of A (read as its transpose), then two triangular solves */
+    private static double[] solve(double[] moments, int p) {
+        double[] l = new double[p * p];
+        for (int j = 0; j < p; j++) {
+            double diagonal = moments[j * p + j];
+            for (int k = 0; k < j; k++) {
+                diagonal -= l[j * p + k] * l[j * p + k];
+            }
+            if (!(diagonal > 1e-12 * Math.max(1, Math.abs(moments[j * p + j])))) {
+                throw new IllegalArgumentException("Cannot compute linear regression: feature " + j
+                        + " is constant or collinear with earlier features; try a ridge term.");
+            }
+            double pivot = Math.sqrt(diagonal);
+            l[j * p + j] = pivot;
+            for (int i = j + 1; i < p; i++) {
+                double value = moments[j * p + i];
+                for (int k = 0; k < j; k++) {
+                    value -= l[i * p + k] * l[j * p + k];
+                }
+                l[i * p + j] = value / pivot;
+            }
+        }
+
+        double[] z = new double[p];
+        for (int i = 0; i < p; i++) {
+            double value = moments[p * p + i];
+            for (int k = 0; k < i; k++) {
+                value -= l[i * p + k] * z[k];
+            }
+            z[i] = value / l[i * p + i];
+        }
+        double[] beta = new double[p];
+        for (int i = p - 1; i >= 0; i--) {
+            double value = z[i];
+            for (int k = i + 1; k < p; k++) {
+                value -= l[k * p + i] * beta[k];
+            }
+            beta[i] = value / l[i * p + i];
+        }
+        return beta;
+    }
+
+    /*
+     * One pass over rows [from, to). Without means it sums every column and y (p + 1 values);
+     * with means it accumulates the centered X^T X upper triangle and X^T y (p * p + p values).
+     */
+    private static class Pass extends RecursiveTask<double[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] rows;
+        private final int features;
+        private final double[] y;
+        private final double[] means;
+        private final int from;
+        private final int to;
+
+        private Pass(double[] rows, int features, double[] y, double[] means, int from, int to) {
+            this.rows = rows;
+            this.features = features;
+            this.y = y;
+            this.means = means;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                return means == null ? sums() : moments();
+            }
+            int middle = (from + to) >>> 1;
+            Pass right = new Pass(rows, features, y, means, middle, to);
+            right.fork();
+            double[] left = new Pass(rows, features, y, means, from, middle).compute();
+            double[] other = right.join();
+            for (int i = 0; i < left.length; i++) {
+                left[i] += other[i];
+            }
+            return left;
+        }
+
+        private double[] sums() {
+            int p = features;
+            double[] sums = new double[p + 1];
+            for (int i = from; i < to; i++) {
+                int offset = i * p;
+                for (int j = 0; j < p; j++) {
+                    sums[j] += rows[offset + j];
+                }
+                sums[p] += y[i];
+            }
+            return sums;
+        }
+
+        private double[] moments() {
+            int p = features;
+            double[] moments = new double[p * p + p];
+            double[] centered = new double[p];
+            double meanY = means[p];
+            for (int i = from; i < to; i++) {
+                int offset = i * p;
+                for (int j = 0; j < p; j++) {
+                    centered[j] = rows[offset + j] - means[j];
+                }
+                double dy = y[i] - meanY;
+                for (int j = 0; j < p; j++) {
+                    double dj = centered[j];
+                    int row = j * p;
+                    for (int k = j; k < p; k++) {
+                        moments[row + k] += dj * centered[k];
+                    }
+                    moments[p * p + j] += dj * dy;
+                }
+            }
+            return moments;
+        }
+    }
+
+    public static void main(String[] args) {
+        /* y = 1 + 2 * a - 3 * b */
+        double[] rows = {1, 0, 0, 1, 1, 1, 2, 1, 3, 5};
+        double[] y = {3, -2, 0, 2, -8};
+
+        MultipleLinearRegression regression = new MultipleLinearRegression();
+        regression.fit(rows, 2, y);
+        System.out.println("Coefficients: " + java.util.Arrays.toString(regression.coefficients())); // about [2.0, -3.0]
+        System.out.println("Intercept: " + regression.intercept()); // about 1.0
+
+        double[] out = new double[2];
+        regression.predict(new double[] {4, 0, 0, 4}, out);
+        System.out.println("Predictions: " + java.util.Arrays.toString(out)); // about [9.0, -11.0]
+    }
+}